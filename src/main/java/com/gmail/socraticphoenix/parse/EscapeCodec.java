@@ -0,0 +1,488 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 socraticphoenix@gmail.com
+ * Copyright (c) 2016 contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.gmail.socraticphoenix.parse;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class provides single-pass escaping and de-escaping of strings, following the escape rules of a {@link
+ * ParserData}. An EscapeCodec is compiled once from the escapes, escape character and unicode escape character of the
+ * data it is created from, and does not reflect any later changes to that data. EscapeCodecs are immutable, and may be
+ * shared between threads
+ */
+public class EscapeCodec {
+    private static final int TABLE_SIZE = 128;
+    private static final int BUFFER_SIZE = 8192;
+
+    private char escapeChar;
+    private char unicodeEscapeChar;
+
+    private char[] escapeTable;
+    private boolean[] escapeTablePresent;
+    private Map<Character, Character> escapeMap;
+    private Map<Character, String[]> multiEscapes;
+    private Map<String, Character> multiEscapeCodes;
+
+    private String[] unescapeTable;
+    private Map<Character, String> unescapeMap;
+
+    private EscapeCodec(ParserData data) {
+        this.escapeChar = data.getEscapeChar();
+        this.unicodeEscapeChar = data.getUnicodeEscapeChar();
+
+        this.escapeTable = new char[EscapeCodec.TABLE_SIZE];
+        this.escapeTablePresent = new boolean[EscapeCodec.TABLE_SIZE];
+        this.escapeMap = new HashMap<>();
+        this.multiEscapes = new HashMap<>();
+        this.multiEscapeCodes = new HashMap<>();
+        this.unescapeTable = new String[EscapeCodec.TABLE_SIZE];
+        this.unescapeMap = new HashMap<>();
+
+        Map<Character, String> escapes = data.getEscapes();
+        String self = String.valueOf(this.escapeChar);
+        if (self.equals(escapes.get(this.escapeChar))) {
+            this.putEscape(this.escapeChar, this.escapeChar);
+        }
+
+        Map<Character, List<String>> multi = new HashMap<>();
+        for (Map.Entry<Character, String> entry : escapes.entrySet()) {
+            char code = entry.getKey();
+            String literal = entry.getValue();
+            if (code < EscapeCodec.TABLE_SIZE) {
+                this.unescapeTable[code] = literal;
+            } else {
+                this.unescapeMap.put(code, literal);
+            }
+
+            if (literal.length() == 1) {
+                this.putEscape(literal.charAt(0), code);
+            } else if (literal.length() > 1 && !this.multiEscapeCodes.containsKey(literal)) {
+                this.multiEscapeCodes.put(literal, code);
+                multi.computeIfAbsent(literal.charAt(0), k -> new ArrayList<>()).add(literal);
+            }
+        }
+
+        multi.forEach((first, literals) -> {
+            String[] sorted = literals.toArray(new String[literals.size()]);
+            Arrays.sort(sorted, (a, b) -> Integer.compare(b.length(), a.length()));
+            this.multiEscapes.put(first, sorted);
+        });
+    }
+
+    /**
+     * Compiles a new EscapeCodec from the escape rules of the given {@link ParserData}
+     *
+     * @param data The data to compile
+     *
+     * @return A codec escaping and de-escaping as specified by {@code data}
+     */
+    public static EscapeCodec of(ParserData data) {
+        return new EscapeCodec(data);
+    }
+
+    private void putEscape(char literal, char code) {
+        if (literal < EscapeCodec.TABLE_SIZE) {
+            if (!this.escapeTablePresent[literal]) {
+                this.escapeTable[literal] = code;
+                this.escapeTablePresent[literal] = true;
+            }
+        } else {
+            this.escapeMap.putIfAbsent(literal, code);
+        }
+    }
+
+    /**
+     * @return The escape character of this codec
+     */
+    public char getEscapeChar() {
+        return this.escapeChar;
+    }
+
+    /**
+     * @return The unicode escape character of this codec
+     */
+    public char getUnicodeEscapeChar() {
+        return this.unicodeEscapeChar;
+    }
+
+    /**
+     * Returns the escape code which should replace the literal character {@code c}, or {@code -1} if {@code c} does
+     * not need escaping
+     *
+     * @param c The character
+     *
+     * @return The escape code for {@code c}, or {@code -1}
+     */
+    public int escapeCode(char c) {
+        if (c < EscapeCodec.TABLE_SIZE) {
+            return this.escapeTablePresent[c] ? this.escapeTable[c] : -1;
+        } else {
+            Character code = this.escapeMap.get(c);
+            return code == null ? -1 : code;
+        }
+    }
+
+    /**
+     * Returns the literal which the escape code {@code code} represents, or null if {@code code} is not an escape code
+     *
+     * @param code The escape code
+     *
+     * @return The literal represented by {@code code}, or null
+     */
+    public String literal(char code) {
+        return code < EscapeCodec.TABLE_SIZE ? this.unescapeTable[code] : this.unescapeMap.get(code);
+    }
+
+    private String multiEscapeAt(CharSequence string, int index) {
+        String[] candidates = this.multiEscapes.get(string.charAt(index));
+        if (candidates != null) {
+            for (String candidate : candidates) {
+                if (EscapeCodec.regionMatches(string, index, candidate)) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean regionMatches(CharSequence string, int index, String candidate) {
+        if (index + candidate.length() > string.length()) {
+            return false;
+        }
+        for (int i = 0; i < candidate.length(); i++) {
+            if (string.charAt(index + i) != candidate.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean needsEscape(CharSequence string, int index) {
+        return this.escapeCode(string.charAt(index)) != -1 || (!this.multiEscapes.isEmpty() && this.multiEscapeAt(string, index) != null);
+    }
+
+    /**
+     * Escapes the given string. If no character in {@code string} needs escaping, {@code string} itself is returned
+     *
+     * @param string The string to escape. If null, an empty string is returned
+     *
+     * @return The escaped string
+     */
+    public String escape(String string) {
+        if (string == null) {
+            return "";
+        }
+
+        int first = 0;
+        while (first < string.length() && !this.needsEscape(string, first)) {
+            first++;
+        }
+        if (first == string.length()) {
+            return string;
+        }
+
+        StringBuilder builder = new StringBuilder(string.length() + 16);
+        builder.append(string, 0, first);
+        try {
+            this.escape(string, first, string.length(), builder);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Escapes the given characters, writing the result to {@code out}
+     *
+     * @param string The characters to escape
+     * @param out    The destination of the escaped characters
+     *
+     * @throws IOException If {@code out} throws an IOException
+     */
+    public void escape(CharSequence string, Appendable out) throws IOException {
+        this.escape(string, 0, string.length(), out);
+    }
+
+    /**
+     * Escapes the characters of {@code string} in the range [start, end), writing the result to {@code out}
+     *
+     * @param string The characters to escape
+     * @param start  The first index to escape
+     * @param end    The index after the last index to escape
+     * @param out    The destination of the escaped characters
+     *
+     * @throws IOException If {@code out} throws an IOException
+     */
+    public void escape(CharSequence string, int start, int end, Appendable out) throws IOException {
+        boolean multi = !this.multiEscapes.isEmpty();
+        int run = start;
+        int i = start;
+        while (i < end) {
+            char c = string.charAt(i);
+            int code = this.escapeCode(c);
+            if (code != -1) {
+                out.append(string, run, i).append(this.escapeChar).append((char) code);
+                run = ++i;
+            } else if (multi) {
+                String literal = this.multiEscapeAt(string, i);
+                if (literal != null && i + literal.length() <= end) {
+                    out.append(string, run, i).append(this.escapeChar).append(this.multiEscapeCodes.get(literal));
+                    i += literal.length();
+                    run = i;
+                } else {
+                    i++;
+                }
+            } else {
+                i++;
+            }
+        }
+        out.append(string, run, end);
+    }
+
+    /**
+     * De-escapes the given string. If {@code string} contains no escape character, {@code string} itself is returned.
+     * No error is thrown on an invalid escape code, and if one is present, the escape character will be interpreted
+     * literally
+     *
+     * @param string The string to de-escape. If null, an empty string is returned
+     *
+     * @return The de-escaped string
+     */
+    public String unescape(String string) {
+        if (string == null) {
+            return "";
+        }
+
+        int first = string.indexOf(this.escapeChar);
+        if (first == -1) {
+            return string;
+        }
+
+        StringBuilder builder = new StringBuilder(string.length());
+        builder.append(string, 0, first);
+        try {
+            this.unescape(string, first, string.length(), builder);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * De-escapes the given characters, writing the result to {@code out}
+     *
+     * @param string The characters to de-escape
+     * @param out    The destination of the de-escaped characters
+     *
+     * @throws IOException If {@code out} throws an IOException
+     */
+    public void unescape(CharSequence string, Appendable out) throws IOException {
+        this.unescape(string, 0, string.length(), out);
+    }
+
+    /**
+     * De-escapes the characters of {@code string} in the range [start, end), writing the result to {@code out}. An
+     * escape sequence left incomplete at {@code end} is written literally
+     *
+     * @param string The characters to de-escape
+     * @param start  The first index to de-escape
+     * @param end    The index after the last index to de-escape
+     * @param out    The destination of the de-escaped characters
+     *
+     * @throws IOException If {@code out} throws an IOException
+     */
+    public void unescape(CharSequence string, int start, int end, Appendable out) throws IOException {
+        this.decoder().decode(string, start, end, out).finish(out);
+    }
+
+    /**
+     * De-escapes all characters read from {@code in}, writing the result to {@code out}. Only a fixed-size buffer is
+     * held in memory, regardless of the length of the input. Neither {@code in} nor {@code out} is closed
+     *
+     * @param in  The source of the characters to de-escape
+     * @param out The destination of the de-escaped characters
+     *
+     * @throws IOException If {@code in} or {@code out} throws an IOException
+     */
+    public void unescape(Reader in, Appendable out) throws IOException {
+        Decoder decoder = this.decoder();
+        char[] buffer = new char[EscapeCodec.BUFFER_SIZE];
+        CharBuffer wrapped = CharBuffer.wrap(buffer);
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            decoder.decode(wrapped, 0, read, out);
+        }
+        decoder.finish(out);
+    }
+
+    /**
+     * Creates a new {@link UnescapingReader} which de-escapes the characters of {@code in} as they are read
+     *
+     * @param in The reader to wrap
+     *
+     * @return A reader over the de-escaped content of {@code in}
+     */
+    public UnescapingReader unescaping(Reader in) {
+        return new UnescapingReader(in, this);
+    }
+
+    /**
+     * @return A new {@link Decoder} for this codec
+     */
+    public Decoder decoder() {
+        return new Decoder();
+    }
+
+    private static int hex(CharSequence string, int start, int length) {
+        int value = 0;
+        for (int i = start; i < start + length; i++) {
+            int digit = Character.digit(string.charAt(i), 16);
+            if (digit == -1) {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * An incremental de-escaper. A Decoder may be given its input in arbitrarily split pieces, and carries any escape
+     * sequence left incomplete at the end of one piece, such as &#92;u12, over to the next. Decoders are not
+     * thread safe
+     */
+    public class Decoder {
+        private static final int NORMAL = 0;
+        private static final int ESCAPED = 1;
+        private static final int UNICODE = 2;
+
+        private int state;
+        private char[] digits;
+        private int digitCount;
+
+        private Decoder() {
+            this.state = Decoder.NORMAL;
+            this.digits = new char[4];
+            this.digitCount = 0;
+        }
+
+        /**
+         * @return True if this decoder is in the middle of an escape sequence, false otherwise
+         */
+        public boolean isPending() {
+            return this.state != Decoder.NORMAL;
+        }
+
+        /**
+         * De-escapes the characters of {@code string} in the range [start, end), writing the result to {@code out}.
+         * An escape sequence left incomplete at {@code end} is continued by the next call to this method
+         *
+         * @param string The characters to de-escape
+         * @param start  The first index to de-escape
+         * @param end    The index after the last index to de-escape
+         * @param out    The destination of the de-escaped characters
+         *
+         * @return This decoder
+         *
+         * @throws IOException If {@code out} throws an IOException
+         */
+        public Decoder decode(CharSequence string, int start, int end, Appendable out) throws IOException {
+            char escapeChar = EscapeCodec.this.escapeChar;
+            int run = start;
+            int i = start;
+            while (i < end) {
+                char c = string.charAt(i);
+                if (this.state == Decoder.NORMAL) {
+                    if (c == escapeChar) {
+                        out.append(string, run, i);
+                        this.state = Decoder.ESCAPED;
+                        run = i + 1;
+                    }
+                } else if (this.state == Decoder.ESCAPED) {
+                    if (c == EscapeCodec.this.unicodeEscapeChar) {
+                        this.state = Decoder.UNICODE;
+                        this.digitCount = 0;
+                    } else {
+                        String literal = EscapeCodec.this.literal(c);
+                        if (literal != null) {
+                            out.append(literal);
+                        } else {
+                            out.append(escapeChar).append(c);
+                        }
+                        this.state = Decoder.NORMAL;
+                    }
+                    run = i + 1;
+                } else {
+                    this.digits[this.digitCount++] = c;
+                    if (this.digitCount == 4) {
+                        int value = EscapeCodec.hex(CharBuffer.wrap(this.digits), 0, 4);
+                        if (value != -1) {
+                            out.append((char) value);
+                        } else {
+                            this.appendUnicodePrefix(out);
+                        }
+                        this.state = Decoder.NORMAL;
+                    }
+                    run = i + 1;
+                }
+                i++;
+            }
+            if (this.state == Decoder.NORMAL) {
+                out.append(string, run, end);
+            }
+            return this;
+        }
+
+        /**
+         * Ends the input of this decoder, writing any incomplete escape sequence literally to {@code out}. After this
+         * method is called, the decoder may be reused for new input
+         *
+         * @param out The destination of the incomplete escape sequence
+         *
+         * @throws IOException If {@code out} throws an IOException
+         */
+        public void finish(Appendable out) throws IOException {
+            if (this.state == Decoder.ESCAPED) {
+                out.append(EscapeCodec.this.escapeChar);
+            } else if (this.state == Decoder.UNICODE) {
+                this.appendUnicodePrefix(out);
+            }
+            this.state = Decoder.NORMAL;
+            this.digitCount = 0;
+        }
+
+        private void appendUnicodePrefix(Appendable out) throws IOException {
+            out.append(EscapeCodec.this.escapeChar).append(EscapeCodec.this.unicodeEscapeChar);
+            for (int i = 0; i < this.digitCount; i++) {
+                out.append(this.digits[i]);
+            }
+        }
+
+    }
+
+}
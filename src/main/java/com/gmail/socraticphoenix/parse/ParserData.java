@@ -47,6 +47,10 @@ public class ParserData {
 
     private Map<Character, Boolean> quotes;
 
+    private List<Pair<String, String>> delimiters;
+    private List<Delimiter> delimiterMachines;
+    private Delimiter activeDelimiter;
+
     public ParserData() {
         this.leftBrackets = new HashMap<>();
         this.rightBrackets = new HashMap<>();
@@ -55,6 +59,9 @@ public class ParserData {
         this.escapeChar = '\0';
         this.escaped = false;
         this.quotes = new HashMap<>();
+        this.delimiters = new ArrayList<>();
+        this.delimiterMachines = new ArrayList<>();
+        this.activeDelimiter = null;
         this.unicodeEscapeChar = 'u';
         this.ua = '\0';
         this.ub = '\0';
@@ -69,6 +76,7 @@ public class ParserData {
         data.escapeChar(this.escapeChar);
         this.escapes.entrySet().forEach(e -> data.escape(e.getKey(), e.getValue()));
         this.quotes.keySet().forEach(data::quote);
+        this.delimiters.forEach(p -> data.delimiters(p.getA(), p.getB()));
         return data;
     }
 
@@ -108,6 +116,10 @@ public class ParserData {
         return this.quotes;
     }
 
+    public List<Pair<String, String>> getDelimiters() {
+        return this.delimiters;
+    }
+
     public ParserData brackets(char left, char right) {
         this.leftBrackets.put(left, 0);
         this.rightBrackets.put(right, 0);
@@ -139,8 +151,32 @@ public class ParserData {
         return this;
     }
 
+    /**
+     * Adds a pair of multi-character delimiters, such as {@code /*} and {@code *}{@code /} for comments, or {@code
+     * """} for raw strings. Content between an opening and closing delimiter is not considered, and is passed
+     * through literally, without processing brackets, quotes or escapes. An opening delimiter is only recognized
+     * outside of quotes, and is recognized once its last character has been considered
+     *
+     * @param open  The opening delimiter
+     * @param close The closing delimiter
+     *
+     * @return This ParserData
+     */
+    public ParserData delimiters(String open, String close) {
+        if (open.isEmpty() || close.isEmpty()) {
+            throw new IllegalArgumentException("Delimiters cannot be empty");
+        }
+        this.delimiters.add(Pair.of(open, close));
+        this.delimiterMachines.add(new Delimiter(open, close));
+        return this;
+    }
+
     public boolean isInQuotes() {
-        return this.quotes.values().stream().filter(b -> b).findFirst().isPresent();
+        return this.quotes.containsValue(true);
+    }
+
+    public boolean isInDelimiters() {
+        return this.activeDelimiter != null;
     }
 
     public boolean isInBrackets() {
@@ -153,11 +189,11 @@ public class ParserData {
     }
 
     public boolean isSignificant(char c) {
-        return this.quotes.containsKey(c) || this.leftBrackets.containsKey(c) || this.rightBrackets.containsKey(c) || this.escapeChar == c || this.escaped;
+        return this.quotes.containsKey(c) || this.leftBrackets.containsKey(c) || this.rightBrackets.containsKey(c) || this.escapeChar == c || this.escaped || this.activeDelimiter != null;
     }
 
     public boolean shouldConsider() {
-        return !this.isInQuotes() && !this.isInBrackets() && !this.escaped && !this.prevEscaped;
+        return this.activeDelimiter == null && !this.isInQuotes() && !this.isInBrackets() && !this.escaped && !this.prevEscaped;
     }
 
     public String subTrailing() {
@@ -188,7 +224,13 @@ public class ParserData {
     }
 
     public String consider(char c) {
-        if (this.unicodeEscaped) {
+        if (this.activeDelimiter != null) {
+            this.prevEscaped = false;
+            if (this.activeDelimiter.close(c)) {
+                this.activeDelimiter = null;
+            }
+            return String.valueOf(c);
+        } else if (this.unicodeEscaped) {
             if(this.ua == '\0') {
                 this.ua = c;
             } else if(this.ub == '\0') {
@@ -225,7 +267,10 @@ public class ParserData {
             this.prevEscaped = false;
             if (c == this.escapeChar) {
                 this.escaped = true;
+                this.delimiterMachines.forEach(Delimiter::clear);
                 return "";
+            } else if (!this.delimiterMachines.isEmpty() && this.openDelimiter(c)) {
+                return String.valueOf(c);
             } else if (!this.isInQuotes()) {
                 if (this.leftBrackets.containsKey(c)) {
                     this.leftBrackets.put(c, this.leftBrackets.get(c) + 1);
@@ -241,4 +286,105 @@ public class ParserData {
         }
     }
 
+    private boolean openDelimiter(char c) {
+        boolean inQuotes = this.isInQuotes();
+        Delimiter opened = null;
+        for (Delimiter delimiter : this.delimiterMachines) {
+            if (delimiter.open(c, inQuotes) && opened == null) {
+                opened = delimiter;
+            }
+        }
+
+        if (opened != null) {
+            this.delimiterMachines.forEach(Delimiter::clear);
+            this.undoPrefix(opened.openSequence);
+            this.activeDelimiter = opened;
+            return true;
+        }
+        return false;
+    }
+
+    private void undoPrefix(String open) {
+        Character quote = null;
+        for (int i = 0; i < open.length() - 1; i++) {
+            char c = open.charAt(i);
+            if (quote == null) {
+                if (this.leftBrackets.containsKey(c)) {
+                    this.leftBrackets.put(c, this.leftBrackets.get(c) - 1);
+                } else if (this.rightBrackets.containsKey(c)) {
+                    this.rightBrackets.put(c, this.rightBrackets.get(c) - 1);
+                } else if (this.quotes.containsKey(c)) {
+                    quote = c;
+                }
+            } else if (quote == c) {
+                quote = null;
+            }
+        }
+        this.quotes.replaceAll((k, v) -> false);
+    }
+
+    private static class Delimiter {
+        private String openSequence;
+        private String closeSequence;
+        private int[] openFailure;
+        private int[] closeFailure;
+        private int openMatched;
+        private int closeMatched;
+
+        public Delimiter(String openSequence, String closeSequence) {
+            this.openSequence = openSequence;
+            this.closeSequence = closeSequence;
+            this.openFailure = Delimiter.failure(openSequence);
+            this.closeFailure = Delimiter.failure(closeSequence);
+        }
+
+        private static int[] failure(String sequence) {
+            int[] failure = new int[sequence.length()];
+            int k = 0;
+            for (int i = 1; i < sequence.length(); i++) {
+                while (k > 0 && sequence.charAt(i) != sequence.charAt(k)) {
+                    k = failure[k - 1];
+                }
+                if (sequence.charAt(i) == sequence.charAt(k)) {
+                    k++;
+                }
+                failure[i] = k;
+            }
+            return failure;
+        }
+
+        private static int step(String sequence, int[] failure, int matched, char c) {
+            while (matched > 0 && sequence.charAt(matched) != c) {
+                matched = failure[matched - 1];
+            }
+            return sequence.charAt(matched) == c ? matched + 1 : matched;
+        }
+
+        public boolean open(char c, boolean inQuotes) {
+            if (this.openMatched == 0 && inQuotes) {
+                return false;
+            }
+            this.openMatched = Delimiter.step(this.openSequence, this.openFailure, this.openMatched, c);
+            if (this.openMatched == this.openSequence.length()) {
+                this.closeMatched = 0;
+                return true;
+            }
+            return false;
+        }
+
+        public boolean close(char c) {
+            this.closeMatched = Delimiter.step(this.closeSequence, this.closeFailure, this.closeMatched, c);
+            if (this.closeMatched == this.closeSequence.length()) {
+                this.closeMatched = 0;
+                return true;
+            }
+            return false;
+        }
+
+        public void clear() {
+            this.openMatched = 0;
+        }
+
+    }
+
 }
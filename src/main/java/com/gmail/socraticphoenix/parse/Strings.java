@@ -33,6 +33,7 @@ import java.util.Stack;
  */
 public class Strings {
     private static final ParserData javaFormat;
+    private static final EscapeCodec javaCodec;
 
     static {
         javaFormat = new ParserData();
@@ -48,6 +49,7 @@ public class Strings {
                 .escape('\'')
                 .escape('\\')
                 .escape('/');
+        javaCodec = EscapeCodec.of(Strings.javaFormat);
     }
 
     public static ParserData javaEscapeFormat() {
@@ -100,11 +102,11 @@ public class Strings {
         if (s == null) {
             return "";
         }
-        String result = "";
+        StringBuilder result = new StringBuilder(s.length() * Math.max(times, 0));
         for (int i = 0; i < times; i++) {
-            result += s;
+            result.append(s);
         }
-        return result;
+        return result.toString();
     }
 
     /**
@@ -158,27 +160,18 @@ public class Strings {
      * @return The escaped string
      */
     public static String escape(String string) {
-        return Strings.escape(string, Strings.javaFormat);
+        return Strings.javaCodec.escape(string);
     }
 
     public static String escape(String string, ParserData data) {
-        if (string == null) {
-            return "";
-        }
-
-        Map<Character, String> escapes = data.getEscapes();
-        char esc = data.getEscapeChar();
-        if(escapes.entrySet().stream().filter(c -> c.getKey() == esc && c.getValue().equals(String.valueOf(esc))).findFirst().isPresent()) {
-            string = string.replace(String.valueOf(esc), esc + "" + esc);
-        }
-        for (Map.Entry<Character, String> entry : escapes.entrySet()) {
-            if (entry.getKey() != esc || !entry.getValue().equals(String.valueOf(esc))) {
-                String re = esc + "" + entry.getKey();
-                string = string.replace(entry.getValue(), re);
-            }
-        }
+        return EscapeCodec.of(data).escape(string);
+    }
 
-        return string;
+    /**
+     * @return The compiled {@link EscapeCodec} for java escape codes
+     */
+    public static EscapeCodec javaEscapeCodec() {
+        return Strings.javaCodec;
     }
 
     /**
@@ -238,15 +231,11 @@ public class Strings {
      * @return The de-escaped string
      */
     public static String deEscape(String string) {
-        return Strings.deEscape(string, Strings.javaFormat);
+        return Strings.javaCodec.unescape(string);
     }
 
     public static String deEscape(String string, ParserData data) {
-        if(string == null) {
-            return "";
-        }
-
-        return CharacterStream.complete(string, data.reset());
+        return EscapeCodec.of(data).unescape(string);
     }
 
     /**
@@ -0,0 +1,154 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 socraticphoenix@gmail.com
+ * Copyright (c) 2016 contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.gmail.socraticphoenix.parse;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+/**
+ * A reader which de-escapes the characters of another reader as they are read, following the escape rules of an {@link
+ * EscapeCodec}. Escape sequences split across reads of the underlying reader are carried over, so only a fixed-size
+ * buffer is held in memory regardless of the length of the input
+ */
+public class UnescapingReader extends FilterReader {
+    private static final int BUFFER_SIZE = 8192;
+
+    private EscapeCodec.Decoder decoder;
+    private char[] buffer;
+    private CharBuffer wrapped;
+    private StringBuilder pending;
+    private int pendingIndex;
+    private boolean eof;
+
+    /**
+     * Creates a new UnescapingReader which de-escapes the characters of {@code in} as specified by {@code codec}
+     *
+     * @param in    The reader to de-escape
+     * @param codec The escape rules to use
+     */
+    public UnescapingReader(Reader in, EscapeCodec codec) {
+        super(in);
+        this.decoder = codec.decoder();
+        this.buffer = new char[UnescapingReader.BUFFER_SIZE];
+        this.wrapped = CharBuffer.wrap(this.buffer);
+        this.pending = new StringBuilder(UnescapingReader.BUFFER_SIZE);
+        this.pendingIndex = 0;
+        this.eof = false;
+    }
+
+    /**
+     * Creates a new UnescapingReader which de-escapes the characters of {@code in} as specified by {@code data}
+     *
+     * @param in   The reader to de-escape
+     * @param data The escape rules to use
+     */
+    public UnescapingReader(Reader in, ParserData data) {
+        this(in, EscapeCodec.of(data));
+    }
+
+    private boolean fill() throws IOException {
+        while (this.pendingIndex >= this.pending.length()) {
+            if (this.eof) {
+                return false;
+            }
+
+            this.pending.setLength(0);
+            this.pendingIndex = 0;
+            int read = this.in.read(this.buffer);
+            if (read == -1) {
+                this.eof = true;
+                this.decoder.finish(this.pending);
+            } else {
+                this.decoder.decode(this.wrapped, 0, read, this.pending);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        synchronized (this.lock) {
+            return this.fill() ? this.pending.charAt(this.pendingIndex++) : -1;
+        }
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > cbuf.length - off) {
+            throw new IndexOutOfBoundsException();
+        } else if (len == 0) {
+            return 0;
+        }
+
+        synchronized (this.lock) {
+            if (!this.fill()) {
+                return -1;
+            }
+            int count = Math.min(len, this.pending.length() - this.pendingIndex);
+            this.pending.getChars(this.pendingIndex, this.pendingIndex + count, cbuf, off);
+            this.pendingIndex += count;
+            return count;
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n < 0) {
+            throw new IllegalArgumentException("skip value is negative");
+        }
+
+        synchronized (this.lock) {
+            long skipped = 0;
+            while (skipped < n && this.fill()) {
+                int count = (int) Math.min(n - skipped, this.pending.length() - this.pendingIndex);
+                this.pendingIndex += count;
+                skipped += count;
+            }
+            return skipped;
+        }
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        synchronized (this.lock) {
+            return this.pendingIndex < this.pending.length() || (!this.eof && this.in.ready());
+        }
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readAheadLimit) throws IOException {
+        throw new IOException("mark() not supported");
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("reset() not supported");
+    }
+
+}
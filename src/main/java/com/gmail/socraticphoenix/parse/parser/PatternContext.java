@@ -24,16 +24,47 @@ package com.gmail.socraticphoenix.parse.parser;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class PatternContext {
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
     private Map<String, PatternRestriction> variables;
+    private boolean shared;
+    private long version;
 
     public PatternContext() {
         this.variables = new HashMap<>();
     }
 
+    public PatternContext copy() {
+        PatternContext copy = new PatternContext();
+        copy.variables = this.variables;
+        copy.shared = true;
+        copy.version = this.version;
+        this.shared = true;
+        return copy;
+    }
+
+    public void restore(PatternContext context) {
+        this.variables = context.variables;
+        this.shared = true;
+        this.version = context.version;
+        context.shared = true;
+    }
+
+    public long getVersion() {
+        return this.version;
+    }
+
     public void setVariable(String name, PatternRestriction restriction) {
-        this.variables.put(name, restriction);
+        if (this.shared) {
+            this.variables = new HashMap<>(this.variables);
+            this.shared = false;
+        }
+        if (this.variables.put(name, restriction) != restriction) {
+            this.version = PatternContext.VERSIONS.incrementAndGet();
+        }
     }
 
     public Optional<PatternRestriction> getVariable(String name) {
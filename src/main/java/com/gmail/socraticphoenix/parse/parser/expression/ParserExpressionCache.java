@@ -0,0 +1,164 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 socraticphoenix@gmail.com
+ * Copyright (c) 2016 contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.gmail.socraticphoenix.parse.parser.expression;
+
+import com.gmail.socraticphoenix.parse.parser.PatternRestriction;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * A thread-safe, size-bounded cache from parser expressions to the restrictions they compile to. The least recently
+ * used expression is evicted once the cache is full. Expressions are compiled outside of the cache's lock, so a slow
+ * compilation never blocks lookups of other expressions; if two threads miss on the same expression at once, both
+ * compile it and the first result is kept. Compiled restrictions hold no state, and are shared between all callers.
+ * Entries may be tagged with a version, such as that of a {@link ParserExpressionRegistry}; an entry is only returned
+ * for the version it was compiled at, and an entry compiled at an older version is replaced instead of evicted
+ */
+public class ParserExpressionCache {
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private Map<String, Compiled> cache;
+    private Function<String, PatternRestriction> compiler;
+    private int capacity;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ParserExpressionCache(int capacity, Function<String, PatternRestriction> compiler) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.compiler = compiler;
+        this.cache = new LinkedHashMap<String, Compiled>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Compiled> eldest) {
+                if (this.size() > ParserExpressionCache.this.capacity) {
+                    ParserExpressionCache.this.evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public ParserExpressionCache(int capacity) {
+        this(capacity, ParserExpressionReader::read);
+    }
+
+    public ParserExpressionCache() {
+        this(ParserExpressionCache.DEFAULT_CAPACITY);
+    }
+
+    public PatternRestriction get(String expression) {
+        return this.get(expression, 0);
+    }
+
+    public PatternRestriction get(String expression, int version) {
+        synchronized (this.cache) {
+            Compiled entry = this.cache.get(expression);
+            if (entry != null && entry.version == version) {
+                this.hits++;
+                return entry.restriction;
+            }
+            this.misses++;
+        }
+
+        PatternRestriction compiled = this.compiler.apply(expression);
+        synchronized (this.cache) {
+            Compiled entry = this.cache.get(expression);
+            if (entry != null && entry.version == version) {
+                return entry.restriction;
+            } else if (entry == null || entry.version < version) {
+                this.cache.put(expression, new Compiled(compiled, version));
+            }
+            return compiled;
+        }
+    }
+
+    public Optional<PatternRestriction> getIfPresent(String expression) {
+        synchronized (this.cache) {
+            Compiled entry = this.cache.get(expression);
+            return entry == null ? Optional.empty() : Optional.of(entry.restriction);
+        }
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    public int size() {
+        synchronized (this.cache) {
+            return this.cache.size();
+        }
+    }
+
+    public long getHits() {
+        synchronized (this.cache) {
+            return this.hits;
+        }
+    }
+
+    public long getMisses() {
+        synchronized (this.cache) {
+            return this.misses;
+        }
+    }
+
+    public long getEvictions() {
+        synchronized (this.cache) {
+            return this.evictions;
+        }
+    }
+
+    public double getHitRate() {
+        synchronized (this.cache) {
+            long lookups = this.hits + this.misses;
+            return lookups == 0 ? 0 : (double) this.hits / lookups;
+        }
+    }
+
+    public void clear() {
+        synchronized (this.cache) {
+            this.cache.clear();
+            this.hits = 0;
+            this.misses = 0;
+            this.evictions = 0;
+        }
+    }
+
+    private static class Compiled {
+        private PatternRestriction restriction;
+        private int version;
+
+        public Compiled(PatternRestriction restriction, int version) {
+            this.restriction = restriction;
+            this.version = version;
+        }
+
+    }
+
+}
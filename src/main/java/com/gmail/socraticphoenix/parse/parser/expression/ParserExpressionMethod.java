@@ -31,4 +31,8 @@ public interface ParserExpressionMethod {
 
     PatternRestriction accept(List<String> parameters);
 
+    default PatternRestriction accept(List<String> parameters, ParserExpressionRegistry registry) {
+        return this.accept(parameters);
+    }
+
 }
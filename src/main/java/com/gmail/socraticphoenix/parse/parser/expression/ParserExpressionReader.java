@@ -41,8 +41,10 @@ public class ParserExpressionReader {
     private ParserData literalData;
     private ParserData argData;
 
+    private ParserExpressionRegistry registry;
 
-    public ParserExpressionReader(String exp) {
+    public ParserExpressionReader(String exp, ParserExpressionRegistry registry) {
+        this.registry = registry;
         this.stream = new CharacterStream(exp);
         this.mainData = new ParserData();
         this.mainData
@@ -59,16 +61,44 @@ public class ParserExpressionReader {
                 .escape(',', "\\,");
     }
 
+    public ParserExpressionReader(String exp) {
+        this(exp, ParserExpressionRegistry.getDefault());
+    }
+
     public static PatternRestriction read(String content) {
         ParserExpressionReader reader = new ParserExpressionReader(content);
         return reader.remainingSequence();
     }
 
+    public static PatternRestriction read(String content, ParserExpressionRegistry registry) {
+        ParserExpressionReader reader = new ParserExpressionReader(content, registry);
+        return reader.remainingSequence();
+    }
+
+    public static PatternRestriction readCached(String content) {
+        return ParserExpressionRegistry.getDefault().readCached(content);
+    }
+
+    public static ParserExpressionCache getCache() {
+        return ParserExpressionRegistry.getDefault().getCache();
+    }
+
     public boolean hasNext() {
         return this.stream.hasNext();
     }
 
     public PatternRestriction next() {
+        Segment segment = this.nextSegment();
+        if (segment.isMethod()) {
+            Optional<ParserExpressionMethod> method = this.registry.lookup(segment.getName().get());
+            if (method.isPresent() && method.get().accepts(segment.getArguments())) {
+                return method.get().accept(segment.getArguments(), this.registry);
+            }
+        }
+        return ParserExpressionReader.literalParserMethod.accept(Items.buildList(segment.getText()));
+    }
+
+    public Segment nextSegment() {
         if (this.stream.isNext('{')) {
             String s = this.stream.nextUntil(this.mainData.reset());
             String cut = Strings.cutFirst(Strings.cutLast(s));
@@ -82,17 +112,10 @@ public class ParserExpressionReader {
                 name = cut;
                 args = "";
             }
-            Optional<ParserExpressionMethod> method = ParserExpressionRegistry.get(name);
-            if (method.isPresent()) {
-                List<String> arguments = this.parseArguments(args);
-                if (method.get().accepts(arguments)) {
-                    return method.get().accept(arguments);
-                }
-            }
-            return ParserExpressionReader.literalParserMethod.accept(Items.buildList(s));
+            return new Segment(s, name, this.parseArguments(args));
         } else {
             String s = this.stream.nextUntil(c -> c == '{', this.literalData.reset());
-            return ParserExpressionReader.literalParserMethod.accept(Items.buildList(s));
+            return new Segment(s, null, Items.buildList(s));
         }
     }
 
@@ -114,4 +137,33 @@ public class ParserExpressionReader {
         return vals;
     }
 
+    public static class Segment {
+        private String text;
+        private String name;
+        private List<String> arguments;
+
+        public Segment(String text, String name, List<String> arguments) {
+            this.text = text;
+            this.name = name;
+            this.arguments = arguments;
+        }
+
+        public String getText() {
+            return this.text;
+        }
+
+        public Optional<String> getName() {
+            return Optional.ofNullable(this.name);
+        }
+
+        public List<String> getArguments() {
+            return this.arguments;
+        }
+
+        public boolean isMethod() {
+            return this.name != null;
+        }
+
+    }
+
 }
@@ -35,43 +35,127 @@ import com.gmail.socraticphoenix.parse.parser.expression.methods.SequenceParserM
 import com.gmail.socraticphoenix.parse.parser.expression.methods.SetAndUseParserMethod;
 import com.gmail.socraticphoenix.parse.parser.expression.methods.SetParserMethod;
 
+import com.gmail.socraticphoenix.parse.parser.PatternRestriction;
+
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 
+/**
+ * A set of parser methods, looked up by name while reading parser expressions. A registry may extend a parent
+ * registry, whose methods it can see but not modify, and which it may shadow with methods of its own; new registries
+ * extend the {@link #getDefault() default registry}, which holds the built-in methods. Each registry publishes its
+ * methods as an immutable snapshot which is copied whenever a method is defined, so lookups take no locks and are
+ * safe while other threads define methods. Each registry caches the expressions read through it, tagging each entry
+ * with the {@link #getVersion() version} read before compiling it, so an entry compiled before this registry or any of
+ * its parents changed is recompiled on its next lookup
+ */
 public class ParserExpressionRegistry {
-    private static Map<String, ParserExpressionMethod> methods;
-
-    static  {
-        ParserExpressionRegistry.methods = new HashMap<>();
-
-        register(new AndParserMethod(), "and", "&&");
-        register(new CompletedParserMethod(), "completed", "co");
-        register(new LazyParserMethod(), "var", "va");
-        register(new LiteralParserMethod(), "literal", "li");
-        register(new OptionalParserMethod(), "optional", "op");
-        register(new OrParserMethod(), "or", "||");
-        register(new RegexParserMethod(), "regex", "rx");
-        register(new RepeatingOrNoneParserMethod(), "repeatingOrNone", "rn");
-        register(new RepeatingParserMethod(), "repeating", "re");
-        register(new SequenceParserMethod(), "sequence", "se");
-        register(new SetAndUseParserMethod(), "setAndUse", "su");
-        register(new SetParserMethod(), "set", "st");
-        register(new ListParserMethod(), "list", "lt");
+    private static final ParserExpressionRegistry DEFAULT = new ParserExpressionRegistry((ParserExpressionRegistry) null);
+
+    static {
+        ParserExpressionRegistry.DEFAULT
+                .define(new AndParserMethod(), "and", "&&")
+                .define(new CompletedParserMethod(), "completed", "co")
+                .define(new LazyParserMethod(), "var", "va")
+                .define(new LiteralParserMethod(), "literal", "li")
+                .define(new OptionalParserMethod(), "optional", "op")
+                .define(new OrParserMethod(), "or", "||")
+                .define(new RegexParserMethod(), "regex", "rx")
+                .define(new RepeatingOrNoneParserMethod(), "repeatingOrNone", "rn")
+                .define(new RepeatingParserMethod(), "repeating", "re")
+                .define(new SequenceParserMethod(), "sequence", "se")
+                .define(new SetAndUseParserMethod(), "setAndUse", "su")
+                .define(new SetParserMethod(), "set", "st")
+                .define(new ListParserMethod(), "list", "lt");
+    }
+
+    private ParserExpressionRegistry parent;
+    private volatile Map<String, ParserExpressionMethod> methods;
+    private volatile int modifications;
+
+    private ParserExpressionCache cache;
+
+    public ParserExpressionRegistry(ParserExpressionRegistry parent) {
+        this.parent = parent;
+        this.methods = Collections.emptyMap();
+        this.modifications = 0;
+        this.cache = new ParserExpressionCache(ParserExpressionCache.DEFAULT_CAPACITY, expression -> ParserExpressionReader.read(expression, this));
+    }
+
+    public ParserExpressionRegistry() {
+        this(ParserExpressionRegistry.DEFAULT);
+    }
+
+    public static ParserExpressionRegistry getDefault() {
+        return ParserExpressionRegistry.DEFAULT;
     }
 
     public static void register(ParserExpressionMethod method, String... names) {
-        for(String name : names) {
-            if(!ParserExpressionRegistry.methods.containsKey(name)) {
-                ParserExpressionRegistry.methods.put(name, method);
-            } else {
+        ParserExpressionRegistry.DEFAULT.define(method, names);
+    }
+
+    public static Optional<ParserExpressionMethod> get(String name) {
+        return ParserExpressionRegistry.DEFAULT.lookup(name);
+    }
+
+    public synchronized ParserExpressionRegistry define(ParserExpressionMethod method, String... names) {
+        Map<String, ParserExpressionMethod> methods = new HashMap<>(this.methods);
+        for (String name : names) {
+            if (methods.putIfAbsent(name, method) != null) {
                 throw new IllegalArgumentException("A parser method is already registered under the name: " + name);
             }
         }
+        this.methods = Collections.unmodifiableMap(methods);
+        this.modifications++;
+        return this;
     }
 
-    public static Optional<ParserExpressionMethod> get(String name) {
-        return Optional.ofNullable(ParserExpressionRegistry.methods.get(name));
+    public Optional<ParserExpressionMethod> lookup(String name) {
+        ParserExpressionRegistry registry = this;
+        while (registry != null) {
+            ParserExpressionMethod method = registry.methods.get(name);
+            if (method != null) {
+                return Optional.of(method);
+            }
+            registry = registry.parent;
+        }
+        return Optional.empty();
+    }
+
+    public Set<String> getNames() {
+        Set<String> names = new TreeSet<>();
+        for (ParserExpressionRegistry registry = this; registry != null; registry = registry.parent) {
+            names.addAll(registry.methods.keySet());
+        }
+        return names;
+    }
+
+    public Optional<ParserExpressionRegistry> getParent() {
+        return Optional.ofNullable(this.parent);
+    }
+
+    public int getVersion() {
+        int version = 0;
+        for (ParserExpressionRegistry registry = this; registry != null; registry = registry.parent) {
+            version += registry.modifications;
+        }
+        return version;
+    }
+
+    public PatternRestriction read(String expression) {
+        return ParserExpressionReader.read(expression, this);
+    }
+
+    public PatternRestriction readCached(String expression) {
+        return this.cache.get(expression, this.getVersion());
+    }
+
+    public ParserExpressionCache getCache() {
+        return this.cache;
     }
 
 }
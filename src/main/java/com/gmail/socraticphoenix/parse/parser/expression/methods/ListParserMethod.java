@@ -25,6 +25,7 @@ import com.gmail.socraticphoenix.parse.parser.PatternRestriction;
 import com.gmail.socraticphoenix.parse.parser.PatternRestrictions;
 import com.gmail.socraticphoenix.parse.parser.expression.ParserExpressionMethod;
 import com.gmail.socraticphoenix.parse.parser.expression.ParserExpressionReader;
+import com.gmail.socraticphoenix.parse.parser.expression.ParserExpressionRegistry;
 
 import java.util.List;
 
@@ -37,7 +38,12 @@ public class ListParserMethod implements ParserExpressionMethod {
 
     @Override
     public PatternRestriction accept(List<String> parameters) {
-        return PatternRestrictions.list(ParserExpressionReader.read(parameters.get(0)), ParserExpressionReader.read(parameters.get(1)));
+        return this.accept(parameters, ParserExpressionRegistry.getDefault());
+    }
+
+    @Override
+    public PatternRestriction accept(List<String> parameters, ParserExpressionRegistry registry) {
+        return PatternRestrictions.list(ParserExpressionReader.read(parameters.get(0), registry), ParserExpressionReader.read(parameters.get(1), registry));
     }
 
 }
@@ -39,7 +39,11 @@ public class LiteralParserMethod implements ParserExpressionMethod {
 
     @Override
     public PatternRestriction accept(List<String> parameters) {
-        return PatternRestrictions.literal(Strings.deEscape(Strings.glue(",", parameters.toArray()), LiteralParserMethod.escapeFormat));
+        return PatternRestrictions.literal(LiteralParserMethod.literal(parameters));
+    }
+
+    public static String literal(List<String> parameters) {
+        return Strings.deEscape(Strings.glue(",", parameters.toArray()), LiteralParserMethod.escapeFormat);
     }
 
 }
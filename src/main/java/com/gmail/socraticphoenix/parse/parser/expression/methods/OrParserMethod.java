@@ -25,6 +25,7 @@ import com.gmail.socraticphoenix.parse.parser.PatternRestriction;
 import com.gmail.socraticphoenix.parse.parser.PatternRestrictions;
 import com.gmail.socraticphoenix.parse.parser.expression.ParserExpressionMethod;
 import com.gmail.socraticphoenix.parse.parser.expression.ParserExpressionReader;
+import com.gmail.socraticphoenix.parse.parser.expression.ParserExpressionRegistry;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -38,7 +39,12 @@ public class OrParserMethod implements ParserExpressionMethod {
 
     @Override
     public PatternRestriction accept(List<String> parameters) {
-        return PatternRestrictions.or(parameters.stream().map(ParserExpressionReader::read).collect(Collectors.toList()));
+        return this.accept(parameters, ParserExpressionRegistry.getDefault());
+    }
+
+    @Override
+    public PatternRestriction accept(List<String> parameters, ParserExpressionRegistry registry) {
+        return PatternRestrictions.or(parameters.stream().map(s -> ParserExpressionReader.read(s, registry)).collect(Collectors.toList()));
     }
 
 }
\ No newline at end of file
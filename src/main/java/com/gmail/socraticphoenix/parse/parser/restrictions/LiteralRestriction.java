@@ -35,7 +35,7 @@ public class LiteralRestriction implements PatternRestriction {
 
     @Override
     public PatternResult match(String string, int start, PatternContext context) {
-        if (string.substring(start).startsWith(this.literal)) {
+        if (string.startsWith(this.literal, start)) {
             return PatternResult.succesful(start + this.literal.length());
         } else {
             return PatternResult.parseError("Expected: " + Strings.escape(this.literal), start);
@@ -0,0 +1,410 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 socraticphoenix@gmail.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * @author Socratic_Phoenix (socraticphoenix@gmail.com)
+ */
+package com.gmail.socraticphoenix.parse.token;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * An immutable, persistent counterpart of {@link Token}. Updates return a new token that shares every unchanged
+ * element and subtree with the original, so rewriting a single descendant with {@link #withReplaced(int[],
+ * ImmutableToken)} copies only the tokens along its path. Immutable tokens can be shared freely between threads and
+ * transformation passes without defensive copies. Each immutable token computes its structural hash once, when it is
+ * created, from the cached hashes of its elements; the hash agrees with {@link Token#structuralHash()} for the same
+ * tree, and lets {@link #equals(Object)} reject unequal subtrees without walking them. Conversions to and from
+ * {@link Token} are iterative, and a subtree shared by identity, such as an interned one, is converted once and stays
+ * shared in the result.
+ */
+public final class ImmutableToken {
+    private static final Element[] EMPTY = new Element[0];
+
+    private final TokenType type;
+    private final Element[] elements;
+    private final int start;
+    private final int end;
+    private final long hash;
+
+    private ImmutableToken(TokenType type, Element[] elements, int start, int end) {
+        this.type = type;
+        this.elements = elements;
+        this.start = start;
+        this.end = end;
+
+        long hash = TokenHash.start(type);
+        for (Element element : elements) {
+            hash = TokenHash.combine(hash, element.hash);
+        }
+        this.hash = TokenHash.finish(hash, elements.length);
+    }
+
+    public static ImmutableToken of(String name) {
+        return new ImmutableToken(TokenType.of(name), ImmutableToken.EMPTY, -1, -1);
+    }
+
+    public static ImmutableToken of(TokenType type, List<Element> elements) {
+        return new ImmutableToken(type, elements.toArray(new Element[elements.size()]), -1, -1);
+    }
+
+    public static ImmutableToken of(Token token) {
+        Map<Token, ImmutableToken> converted = new IdentityHashMap<>();
+        Deque<Conversion> stack = new ArrayDeque<>();
+        stack.push(new Conversion(token, new Element[token.getParameters().size()]));
+        ImmutableToken result = null;
+        while (!stack.isEmpty()) {
+            Conversion frame = stack.peek();
+            if (result != null) {
+                frame.elements[frame.index++] = new Element(result);
+                result = null;
+            }
+
+            if (frame.index < frame.elements.length) {
+                TokenParameters.Element element = frame.token.getParameters().get(frame.index);
+                if (!element.getToken().isPresent()) {
+                    frame.elements[frame.index++] = new Element(element.getString().get());
+                } else {
+                    Token child = element.getToken().get();
+                    ImmutableToken done = converted.get(child);
+                    if (done != null) {
+                        frame.elements[frame.index++] = new Element(done);
+                    } else {
+                        stack.push(new Conversion(child, new Element[child.getParameters().size()]));
+                    }
+                }
+            } else {
+                stack.pop();
+                result = new ImmutableToken(frame.token.getType(), frame.elements, frame.token.getStart(), frame.token.getEnd());
+                converted.put(frame.token, result);
+            }
+        }
+        return result;
+    }
+
+    public static Element element(String string) {
+        return new Element(string);
+    }
+
+    public static Element element(ImmutableToken token) {
+        return new Element(token);
+    }
+
+    public Token toToken() {
+        Map<ImmutableToken, Token> converted = new IdentityHashMap<>();
+        Deque<Conversion> stack = new ArrayDeque<>();
+        stack.push(new Conversion(this));
+        Token result = null;
+        while (!stack.isEmpty()) {
+            Conversion frame = stack.peek();
+            if (result != null) {
+                frame.token.addElement(result);
+                frame.index++;
+                result = null;
+            }
+
+            if (frame.index < frame.elements.length) {
+                Element element = frame.elements[frame.index];
+                if (element.token == null) {
+                    frame.token.addElement(element.string);
+                    frame.index++;
+                } else {
+                    Token done = converted.get(element.token);
+                    if (done != null) {
+                        frame.token.addElement(done);
+                        frame.index++;
+                    } else {
+                        stack.push(new Conversion(element.token));
+                    }
+                }
+            } else {
+                stack.pop();
+                result = frame.token;
+                converted.put(frame.immutable, result);
+            }
+        }
+        return result;
+    }
+
+    public String getName() {
+        return this.type.getName();
+    }
+
+    public TokenType getType() {
+        return this.type;
+    }
+
+    public int getStart() {
+        return this.start;
+    }
+
+    public int getEnd() {
+        return this.end;
+    }
+
+    public int size() {
+        return this.elements.length;
+    }
+
+    public Element get(int index) {
+        return this.elements[index];
+    }
+
+    public ImmutableToken at(int... path) {
+        ImmutableToken token = this;
+        for (int index : path) {
+            Element element = token.elements[index];
+            if (element.token == null) {
+                throw new IllegalArgumentException("Element at " + index + " of @" + token.getName() + " is not a token");
+            }
+            token = element.token;
+        }
+        return token;
+    }
+
+    public List<Element> getElements() {
+        return Collections.unmodifiableList(Arrays.asList(this.elements));
+    }
+
+    public Optional<ImmutableToken> first(String name) {
+        for (Element element : this.elements) {
+            if (element.token != null && element.token.getName().equals(name)) {
+                return Optional.of(element.token);
+            }
+        }
+        return Optional.empty();
+    }
+
+    public List<ImmutableToken> all(String name) {
+        List<ImmutableToken> tokens = new ArrayList<>();
+        for (Element element : this.elements) {
+            if (element.token != null && element.token.getName().equals(name)) {
+                tokens.add(element.token);
+            }
+        }
+        return tokens;
+    }
+
+    public ImmutableToken withName(String name) {
+        return new ImmutableToken(TokenType.of(name), this.elements, this.start, this.end);
+    }
+
+    public ImmutableToken withSpan(int start, int end) {
+        return new ImmutableToken(this.type, this.elements, start, end);
+    }
+
+    public ImmutableToken with(int index, Element element) {
+        Element[] elements = this.elements.clone();
+        elements[index] = element;
+        return new ImmutableToken(this.type, elements, this.start, this.end);
+    }
+
+    public ImmutableToken with(int index, String string) {
+        return this.with(index, new Element(string));
+    }
+
+    public ImmutableToken with(int index, ImmutableToken token) {
+        return this.with(index, new Element(token));
+    }
+
+    public ImmutableToken withInserted(int index, Element element) {
+        Element[] elements = new Element[this.elements.length + 1];
+        System.arraycopy(this.elements, 0, elements, 0, index);
+        elements[index] = element;
+        System.arraycopy(this.elements, index, elements, index + 1, this.elements.length - index);
+        return new ImmutableToken(this.type, elements, this.start, this.end);
+    }
+
+    public ImmutableToken withAdded(Element element) {
+        return this.withInserted(this.elements.length, element);
+    }
+
+    public ImmutableToken withAdded(String string) {
+        return this.withAdded(new Element(string));
+    }
+
+    public ImmutableToken withAdded(ImmutableToken token) {
+        return this.withAdded(new Element(token));
+    }
+
+    public ImmutableToken withRemoved(int index) {
+        Element[] elements = new Element[this.elements.length - 1];
+        System.arraycopy(this.elements, 0, elements, 0, index);
+        System.arraycopy(this.elements, index + 1, elements, index, elements.length - index);
+        return new ImmutableToken(this.type, elements, this.start, this.end);
+    }
+
+    public ImmutableToken withReplaced(int[] path, Element element) {
+        if (path.length == 0) {
+            throw new IllegalArgumentException("Cannot replace the root token with an element");
+        }
+
+        ImmutableToken[] tokens = new ImmutableToken[path.length];
+        ImmutableToken token = this;
+        for (int i = 0; i < path.length - 1; i++) {
+            tokens[i] = token;
+            token = token.at(path[i]);
+        }
+        tokens[path.length - 1] = token;
+
+        ImmutableToken result = token.with(path[path.length - 1], element);
+        for (int i = path.length - 2; i >= 0; i--) {
+            result = tokens[i].with(path[i], result);
+        }
+        return result;
+    }
+
+    public ImmutableToken withReplaced(int[] path, ImmutableToken replacement) {
+        return path.length == 0 ? replacement : this.withReplaced(path, new Element(replacement));
+    }
+
+    public long structuralHash() {
+        return this.hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof ImmutableToken)) {
+            return false;
+        }
+
+        Deque<ImmutableToken> stack = new ArrayDeque<>();
+        stack.push(this);
+        stack.push((ImmutableToken) o);
+        while (!stack.isEmpty()) {
+            ImmutableToken a = stack.pop();
+            ImmutableToken b = stack.pop();
+            if (a == b) {
+                continue;
+            } else if (a.hash != b.hash || a.type != b.type || a.elements.length != b.elements.length) {
+                return false;
+            }
+
+            for (int i = 0; i < a.elements.length; i++) {
+                Element x = a.elements[i];
+                Element y = b.elements[i];
+                if (x.token != null && y.token != null) {
+                    stack.push(x.token);
+                    stack.push(y.token);
+                } else if (x.token != null || y.token != null || !x.equals(y)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.hash);
+    }
+
+    public String write() {
+        return this.toToken().write();
+    }
+
+    @Override
+    public String toString() {
+        return this.write();
+    }
+
+    private static class Conversion {
+        private Token token;
+        private ImmutableToken immutable;
+        private Element[] elements;
+        private int index;
+
+        public Conversion(Token token, Element[] elements) {
+            this.token = token;
+            this.elements = elements;
+        }
+
+        public Conversion(ImmutableToken immutable) {
+            this.token = new Token(immutable.type).setSpan(immutable.start, immutable.end);
+            this.immutable = immutable;
+            this.elements = immutable.elements;
+        }
+
+    }
+
+    public static final class Element {
+        private final String string;
+        private final ImmutableToken token;
+        private final long hash;
+
+        private Element(String string) {
+            this.string = string;
+            this.token = null;
+            this.hash = TokenHash.of(string);
+        }
+
+        private Element(ImmutableToken token) {
+            this.string = null;
+            this.token = token;
+            this.hash = token.hash;
+        }
+
+        public long structuralHash() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            } else if (!(o instanceof Element)) {
+                return false;
+            }
+
+            Element element = (Element) o;
+            if (this.hash != element.hash) {
+                return false;
+            }
+            return this.token != null ? this.token.equals(element.token) : this.string.equals(element.string);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(this.hash);
+        }
+
+        public Optional<String> getString() {
+            return Optional.ofNullable(this.string);
+        }
+
+        public Optional<ImmutableToken> getToken() {
+            return Optional.ofNullable(this.token);
+        }
+
+        @Override
+        public String toString() {
+            return this.token != null ? this.token.write() : TokenParameters.element(this.string).toString();
+        }
+
+    }
+
+}
@@ -22,104 +22,361 @@
  */
 package com.gmail.socraticphoenix.parse.token;
 
-import com.gmail.socraticphoenix.parse.Strings;
-
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 public class Token implements Cloneable {
     public static final String TOKEN_PREFIX = "@";
 
-    private String name;
+    private TokenType type;
     private TokenParameters parameters;
+    private int start;
+    private int end;
+
+    private volatile int shift;
+    private int shiftFrom;
+
+    private boolean interned;
+    private long hash;
+    private volatile long hashEpoch;
+
+    private Index index;
 
     public Token(String name) {
-        if(!name.equals(Strings.escape(name))) {
-            throw new IllegalArgumentException("Tokens cannot have names that require escaping (\"".concat(name).concat("\" was not equal to \"".concat(Strings.escape(name)).concat("\")")));
-        }
+        this(TokenType.of(name));
+    }
 
-        this.name = name;
+    public Token(TokenType type) {
+        this.type = type;
         this.parameters = new TokenParameters();
+        this.start = -1;
+        this.end = -1;
     }
 
     public Optional<Token> first(String name) {
-        Optional<TokenParameters.Element> elementOptional = this.parameters.stream().filter(element -> element.getToken().isPresent() && element.getToken().get().getName().equals(name)).findFirst();
-        if(elementOptional.isPresent()) {
-            return elementOptional.get().getToken();
-        } else {
-            return Optional.empty();
-        }
+        Optional<TokenType> type = TokenType.get(name);
+        return type.isPresent() ? this.first(type.get()) : Optional.empty();
+    }
+
+    public Optional<Token> first(TokenType type) {
+        List<Token> tokens = this.index().get(type);
+        return tokens == null ? Optional.empty() : Optional.of(tokens.get(0));
     }
 
     public List<Token> all(String name) {
-        return this.parameters.stream().filter(element -> element.getToken().isPresent() && element.getToken().get().getName().equals(name)).map(element -> element.getToken().get()).collect(Collectors.toList());
+        Optional<TokenType> type = TokenType.get(name);
+        return type.isPresent() ? this.all(type.get()) : new ArrayList<>();
+    }
+
+    public List<Token> all(TokenType type) {
+        List<Token> tokens = this.index().get(type);
+        return tokens == null ? new ArrayList<>() : new ArrayList<>(tokens);
+    }
+
+    List<Token> indexed(TokenType type) {
+        List<Token> tokens = this.index().get(type);
+        return tokens == null ? Collections.emptyList() : tokens;
+    }
+
+    private Map<TokenType, List<Token>> index() {
+        Index index = this.index;
+        if (index == null || index.modifications != this.getParameters().getModifications() || index.size != this.getParameters().size()) {
+            Map<TokenType, List<Token>> children = new IdentityHashMap<>();
+            for (TokenParameters.Element element : this.getParameters()) {
+                if (element.getToken().isPresent()) {
+                    Token token = element.getToken().get();
+                    children.computeIfAbsent(token.type, k -> new ArrayList<>(2)).add(token);
+                }
+            }
+            index = new Index(children, this.getParameters().getModifications(), this.getParameters().size());
+            this.index = index;
+        }
+        return index.children;
     }
 
     public Token addElement(String element) {
-        this.parameters.add(new TokenParameters.Element(element));
+        this.getParameters().add(new TokenParameters.Element(element));
         return this;
     }
 
     public Token addElement(Token token) {
-        this.parameters.add(new TokenParameters.Element(token));
+        this.getParameters().add(new TokenParameters.Element(token));
         return this;
     }
 
     public Token addElement(TokenParameters.Element element) {
-        this.parameters.add(element);
+        this.getParameters().add(element);
         return this;
     }
 
     public Token clone() {
-        Token token = new Token(this.name);
-        for(TokenParameters.Element element : this.parameters) {
-            if(element.getString().isPresent()) {
-                token.addElement(element.getString().get());
+        Token token = new Token(this.type);
+        for(TokenParameters.Element element : this.getParameters()) {
+            if(!element.getToken().isPresent()) {
+                token.addElement(element);
             } else {
                 token.addElement(element.getToken().get().clone());
             }
         }
+        token.setSpan(this.start, this.end);
         return token;
     }
 
     public String getName() {
-        return this.name;
+        return this.type.getName();
+    }
+
+    public TokenType getType() {
+        return this.type;
     }
 
     public TokenParameters getParameters() {
+        if (this.shift != 0) {
+            this.settle();
+        }
         return this.parameters;
     }
 
+    public int getStart() {
+        return this.start;
+    }
+
+    public int getEnd() {
+        return this.end;
+    }
+
+    public boolean hasSpan() {
+        return this.start >= 0 && this.end >= 0;
+    }
+
+    public boolean isInterned() {
+        return this.interned;
+    }
+
+    void markInterned() {
+        this.getParameters().freeze();
+        this.interned = true;
+    }
+
+    public Token setSpan(int start, int end) {
+        if (this.interned) {
+            throw new IllegalStateException("@" + this.getName() + " is interned and shared, so its span cannot be changed");
+        }
+        this.start = start;
+        this.end = end;
+        return this;
+    }
+
+    public synchronized Token shift(int delta) {
+        if (this.interned) {
+            throw new IllegalStateException("@" + this.getName() + " is interned and shared, so it cannot be shifted");
+        }
+        if (this.hasSpan()) {
+            this.start += delta;
+            this.end += delta;
+        }
+        return this.shiftElements(0, delta);
+    }
+
+    public synchronized Token shiftElements(int from, int delta) {
+        if (this.interned) {
+            throw new IllegalStateException("@" + this.getName() + " is interned and shared, so it cannot be shifted");
+        } else if (delta == 0) {
+            return this;
+        }
+
+        if (this.shift == 0) {
+            this.shiftFrom = from;
+            this.shift = delta;
+        } else if (from >= this.shiftFrom) {
+            this.apply(this.shiftFrom, from, this.shift);
+            this.shiftFrom = from;
+            this.shift += delta;
+        } else {
+            this.apply(from, this.shiftFrom, delta);
+            this.shift += delta;
+        }
+        return this;
+    }
+
+    public synchronized int childEnclosing(int start, int end) {
+        int low = 0;
+        int high = this.parameters.size() - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int probe = mid;
+            while (probe <= high && !this.parameters.get(probe).hasSpan()) {
+                probe++;
+            }
+
+            if (probe <= high && this.parameters.get(probe).getStart() + this.pending(probe) < start) {
+                found = probe;
+                low = probe + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        if (found < 0) {
+            return -1;
+        }
+        TokenParameters.Element element = this.parameters.get(found);
+        if (!element.getToken().isPresent() || end >= element.getEnd() + this.pending(found)) {
+            return -1;
+        }
+        this.settle(found);
+        return found;
+    }
+
+    public synchronized TokenParameters.Element getElement(int index) {
+        this.settle(index);
+        return this.parameters.get(index);
+    }
+
+    public synchronized Token setElement(int index, TokenParameters.Element element) {
+        this.settle(index);
+        this.parameters.set(index, element);
+        return this;
+    }
+
+    private int pending(int index) {
+        return index >= this.shiftFrom ? this.shift : 0;
+    }
+
+    private synchronized void settle() {
+        if (this.shift != 0) {
+            this.apply(this.shiftFrom, this.parameters.size(), this.shift);
+            this.shift = 0;
+        }
+    }
+
+    private void settle(int index) {
+        if (this.shift != 0 && index >= this.shiftFrom) {
+            this.apply(this.shiftFrom, index + 1, this.shift);
+            this.shiftFrom = index + 1;
+        }
+    }
+
+    private void apply(int from, int to, int delta) {
+        for (int i = from; i < to && i < this.parameters.size(); i++) {
+            TokenParameters.Element element = this.parameters.get(i);
+            if (element.getToken().isPresent()) {
+                element.getToken().get().shift(delta);
+            } else {
+                this.parameters.respan(i, element.shifted(delta));
+            }
+        }
+    }
+
     public String writePretty() {
         return this.writePretty(0);
     }
 
     public String writePretty(int i) {
-        String indent = Strings.indent(i);
-        String indent2 = Strings.indent(i + 1);
-        String ls = System.lineSeparator();
-        StringBuilder builder = new StringBuilder();
-        builder.append(indent).append(TOKEN_PREFIX).append(this.name).append("(").append(ls);
-        for (int j = 0; j < this.parameters.size(); j++) {
-            TokenParameters.Element element = this.parameters.get(j);
-            if(element.getString().isPresent()) {
-                builder.append(indent2).append(element.getString().get());
-            } else {
-                builder.append(element.getToken().get().writePretty(i + 1));
-            }
-            if(j < this.parameters.size() - 1) {
-                builder.append(",").append(ls);
+        return TokenWriter.toPrettyString(this, i);
+    }
+
+    public String write() {
+        return TokenWriter.toString(this);
+    }
+
+    public long structuralHash() {
+        long epoch = TokenParameters.epoch();
+        long cached = this.cachedHash(epoch);
+        if (cached != 0) {
+            return cached;
+        }
+
+        TokenParameters parameters = this.getParameters();
+        long hash = TokenHash.start(this.type);
+        for (int i = 0; i < parameters.size(); i++) {
+            TokenParameters.Element element = parameters.get(i);
+            long child = element.getToken().isPresent() ? element.getToken().get().cachedHash(epoch) : element.structuralHash();
+            if (child == 0) {
+                return this.structuralHash(epoch);
             }
+            hash = TokenHash.combine(hash, child);
+        }
+        hash = TokenHash.finish(hash, parameters.size());
+        parameters.markHashed();
+        this.hash = hash;
+        this.hashEpoch = epoch;
+        return hash;
+    }
 
+    private long structuralHash(long epoch) {
+        Deque<HashFrame> stack = new ArrayDeque<>();
+        stack.push(new HashFrame(this));
+        while (true) {
+            HashFrame frame = stack.peek();
+            TokenParameters parameters = frame.token.getParameters();
+            if (frame.index < parameters.size()) {
+                TokenParameters.Element element = parameters.get(frame.index++);
+                if (element.getToken().isPresent()) {
+                    Token child = element.getToken().get();
+                    long hash = child.cachedHash(epoch);
+                    if (hash != 0) {
+                        frame.hash = TokenHash.combine(frame.hash, hash);
+                    } else {
+                        stack.push(new HashFrame(child));
+                    }
+                } else {
+                    frame.hash = TokenHash.combine(frame.hash, element.structuralHash());
+                }
+            } else {
+                stack.pop();
+                long hash = TokenHash.finish(frame.hash, parameters.size());
+                parameters.markHashed();
+                frame.token.hash = hash;
+                frame.token.hashEpoch = epoch;
+                if (stack.isEmpty()) {
+                    return hash;
+                }
+                stack.peek().hash = TokenHash.combine(stack.peek().hash, hash);
+            }
         }
-        return builder.append(ls).append(indent).append(")").toString();
     }
 
-    public String write() {
-        StringBuilder builder = new StringBuilder();
-        builder.append(Token.TOKEN_PREFIX).append(this.name).append("(").append(this.parameters.write()).append(")");
-        return builder.toString();
+    private long cachedHash(long epoch) {
+        return this.hashEpoch == epoch || this.interned ? this.hash : 0;
+    }
+
+    public boolean structurallyEquals(Token other) {
+        if (other == null) {
+            return false;
+        }
+
+        Deque<Token> stack = new ArrayDeque<>();
+        stack.push(this);
+        stack.push(other);
+        while (!stack.isEmpty()) {
+            Token a = stack.pop();
+            Token b = stack.pop();
+            if (a == b) {
+                continue;
+            } else if (a.type != b.type || a.getParameters().size() != b.getParameters().size()) {
+                return false;
+            }
+
+            for (int i = 0; i < a.getParameters().size(); i++) {
+                TokenParameters.Element x = a.getParameters().get(i);
+                TokenParameters.Element y = b.getParameters().get(i);
+                if (x.getToken().isPresent() && y.getToken().isPresent()) {
+                    stack.push(x.getToken().get());
+                    stack.push(y.getToken().get());
+                } else if (x != y && (x.getToken().isPresent() || y.getToken().isPresent() || !x.structurallyEquals(y))) {
+                    return false;
+                }
+            }
+        }
+        return true;
     }
 
     public static Token parse(String tokenString) throws TokenizerException {
@@ -127,4 +384,30 @@ public class Token implements Cloneable {
         return tokenReader.nextToken();
     }
 
+    private static class HashFrame {
+        private Token token;
+        private int index;
+        private long hash;
+
+        public HashFrame(Token token) {
+            this.token = token;
+            this.index = 0;
+            this.hash = TokenHash.start(token.type);
+        }
+
+    }
+
+    private static class Index {
+        private final Map<TokenType, List<Token>> children;
+        private final int modifications;
+        private final int size;
+
+        public Index(Map<TokenType, List<Token>> children, int modifications, int size) {
+            this.children = children;
+            this.modifications = modifications;
+            this.size = size;
+        }
+
+    }
+
 }
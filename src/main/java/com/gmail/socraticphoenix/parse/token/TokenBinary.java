@@ -0,0 +1,444 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 socraticphoenix@gmail.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * @author Socratic_Phoenix (socraticphoenix@gmail.com)
+ */
+package com.gmail.socraticphoenix.parse.token;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A compact binary encoding of {@link Token} trees. An encoding starts with {@link #MAGIC} and a version byte, followed
+ * by a table of token names and the nodes of the tree in preorder. Lengths and indices are unsigned varints. A token
+ * node holds its name index, its span, its child count and the byte size of its children, so that readers can skip
+ * whole subtrees; a value node holds its UTF-8 length and bytes, where a surrogate that is not part of a pair is encoded
+ * on its own in three bytes, as in modified UTF-8, so that any string round-trips. {@link #read(ByteBuffer)} reads only the name table
+ * up front and returns a {@link Node} view that decodes nodes as they are visited, so a memory-mapped buffer can be
+ * navigated without parsing it first.
+ */
+public class TokenBinary {
+    public static final int MAGIC = 0x544F4B42;
+    public static final byte VERSION = 1;
+
+    private static final byte TOKEN = 0;
+    private static final byte VALUE = 1;
+
+    private byte[] bytes;
+    private int size;
+
+    private TokenBinary() {
+        this.bytes = new byte[256];
+        this.size = 0;
+    }
+
+    public static byte[] toBytes(Token token) {
+        List<String> names = new ArrayList<>();
+        Map<String, Integer> ids = new HashMap<>();
+        TokenBinary nodes = new TokenBinary();
+        nodes.writeNodes(token, names, ids);
+
+        TokenBinary header = new TokenBinary();
+        header.writeInt(TokenBinary.MAGIC);
+        header.writeByte(TokenBinary.VERSION);
+        header.writeVarInt(names.size());
+        for (String name : names) {
+            header.writeString(name, 0, name.length());
+        }
+
+        byte[] result = Arrays.copyOf(header.bytes, header.size + nodes.size);
+        System.arraycopy(nodes.bytes, 0, result, header.size, nodes.size);
+        return result;
+    }
+
+    public static void write(Token token, OutputStream out) throws IOException {
+        out.write(TokenBinary.toBytes(token));
+    }
+
+    public static Node read(byte[] bytes) {
+        return TokenBinary.read(ByteBuffer.wrap(bytes));
+    }
+
+    public static Node read(ByteBuffer buffer) {
+        try {
+            int[] cursor = {buffer.position()};
+            if (buffer.getInt(cursor[0]) != TokenBinary.MAGIC) {
+                throw new IllegalArgumentException("Buffer does not contain a binary token");
+            }
+            cursor[0] += 4;
+            byte version = buffer.get(cursor[0]++);
+            if (version != TokenBinary.VERSION) {
+                throw new IllegalArgumentException("Unsupported binary token version: " + version);
+            }
+
+            String[] names = new String[TokenBinary.readVarInt(buffer, cursor)];
+            for (int i = 0; i < names.length; i++) {
+                int length = TokenBinary.readVarInt(buffer, cursor);
+                names[i] = TokenBinary.decode(buffer, cursor[0], length);
+                cursor[0] += length;
+            }
+            return new Node(buffer, names, cursor[0]);
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated binary token", e);
+        }
+    }
+
+    private void writeNodes(Token root, List<String> names, Map<String, Integer> ids) {
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(this.openToken(root, names, ids));
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            TokenParameters parameters = frame.token.getParameters();
+            if (frame.index < parameters.size()) {
+                TokenParameters.Element element = parameters.get(frame.index++);
+                if (element.getToken().isPresent()) {
+                    stack.push(this.openToken(element.getToken().get(), names, ids));
+                } else if (element.hasSpan()) {
+                    this.writeByte(TokenBinary.VALUE);
+                    this.writeString(element.getSource(), element.getSourceStart(), element.getSourceEnd());
+                } else {
+                    String value = element.getString().get();
+                    this.writeByte(TokenBinary.VALUE);
+                    this.writeString(value, 0, value.length());
+                }
+            } else {
+                stack.pop();
+                int children = this.size - frame.sizeOffset - 4;
+                this.bytes[frame.sizeOffset] = (byte) (children >>> 24);
+                this.bytes[frame.sizeOffset + 1] = (byte) (children >>> 16);
+                this.bytes[frame.sizeOffset + 2] = (byte) (children >>> 8);
+                this.bytes[frame.sizeOffset + 3] = (byte) children;
+            }
+        }
+    }
+
+    private Frame openToken(Token token, List<String> names, Map<String, Integer> ids) {
+        Integer id = ids.get(token.getName());
+        if (id == null) {
+            id = names.size();
+            names.add(token.getName());
+            ids.put(token.getName(), id);
+        }
+
+        this.writeByte(TokenBinary.TOKEN);
+        this.writeVarInt(id);
+        this.writeVarInt(token.getStart() + 1);
+        this.writeVarInt(token.getEnd() + 1);
+        this.writeVarInt(token.getParameters().size());
+        Frame frame = new Frame(token, this.size);
+        this.writeInt(0);
+        return frame;
+    }
+
+    private void ensure(int extra) {
+        if (this.size + extra > this.bytes.length) {
+            this.bytes = Arrays.copyOf(this.bytes, Math.max(this.size + extra, this.bytes.length * 2));
+        }
+    }
+
+    private void writeByte(int value) {
+        this.ensure(1);
+        this.bytes[this.size++] = (byte) value;
+    }
+
+    private void writeInt(int value) {
+        this.ensure(4);
+        this.bytes[this.size++] = (byte) (value >>> 24);
+        this.bytes[this.size++] = (byte) (value >>> 16);
+        this.bytes[this.size++] = (byte) (value >>> 8);
+        this.bytes[this.size++] = (byte) value;
+    }
+
+    private void writeVarInt(int value) {
+        this.ensure(5);
+        while ((value & ~0x7F) != 0) {
+            this.bytes[this.size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        this.bytes[this.size++] = (byte) value;
+    }
+
+    private void writeString(String string, int start, int end) {
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(string.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+
+        this.writeVarInt(length);
+        this.ensure(length);
+        for (int i = start; i < end; i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                this.bytes[this.size++] = (byte) c;
+            } else if (c < 0x800) {
+                this.bytes[this.size++] = (byte) (0xC0 | (c >> 6));
+                this.bytes[this.size++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(string.charAt(i + 1))) {
+                int point = Character.toCodePoint(c, string.charAt(++i));
+                this.bytes[this.size++] = (byte) (0xF0 | (point >> 18));
+                this.bytes[this.size++] = (byte) (0x80 | ((point >> 12) & 0x3F));
+                this.bytes[this.size++] = (byte) (0x80 | ((point >> 6) & 0x3F));
+                this.bytes[this.size++] = (byte) (0x80 | (point & 0x3F));
+            } else {
+                this.bytes[this.size++] = (byte) (0xE0 | (c >> 12));
+                this.bytes[this.size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                this.bytes[this.size++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private static int readVarInt(ByteBuffer buffer, int[] cursor) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 28) {
+                throw new IllegalArgumentException("Malformed varint at " + cursor[0]);
+            }
+            b = buffer.get(cursor[0]++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static String decode(ByteBuffer buffer, int offset, int length) {
+        byte[] bytes;
+        int start;
+        if (buffer.hasArray()) {
+            bytes = buffer.array();
+            start = buffer.arrayOffset() + offset;
+            if (start + length > buffer.arrayOffset() + buffer.limit()) {
+                throw new IndexOutOfBoundsException("String at " + offset + " runs past the end of the buffer");
+            }
+        } else {
+            bytes = new byte[length];
+            start = 0;
+            for (int i = 0; i < length; i++) {
+                bytes[i] = buffer.get(offset + i);
+            }
+        }
+
+        for (int i = start; i < start + length; i++) {
+            if (bytes[i] == (byte) 0xED) {
+                return TokenBinary.decodeSurrogates(bytes, start, length, offset);
+            }
+        }
+        return new String(bytes, start, length, StandardCharsets.UTF_8);
+    }
+
+    private static String decodeSurrogates(byte[] bytes, int start, int length, int offset) {
+        StringBuilder builder = new StringBuilder(length);
+        int end = start + length;
+        int i = start;
+        while (i < end) {
+            int b = bytes[i] & 0xFF;
+            int count = b < 0x80 ? 1 : b >= 0xC0 && b < 0xE0 ? 2 : b >= 0xE0 && b < 0xF0 ? 3 : b >= 0xF0 && b < 0xF8 ? 4 : 0;
+            if (count == 0 || i + count > end) {
+                throw new IllegalArgumentException("Malformed string at " + (offset + i - start));
+            }
+
+            int point = count == 1 ? b : b & (0xFF >> (count + 1));
+            for (int j = 1; j < count; j++) {
+                int continuation = bytes[i + j] & 0xFF;
+                if ((continuation & 0xC0) != 0x80) {
+                    throw new IllegalArgumentException("Malformed string at " + (offset + i - start));
+                }
+                point = (point << 6) | (continuation & 0x3F);
+            }
+            builder.appendCodePoint(point);
+            i += count;
+        }
+        return builder.toString();
+    }
+
+    private static class Frame {
+        private Token token;
+        private int index;
+        private int sizeOffset;
+
+        public Frame(Token token, int sizeOffset) {
+            this.token = token;
+            this.index = 0;
+            this.sizeOffset = sizeOffset;
+        }
+
+    }
+
+    public static class Node {
+        private ByteBuffer buffer;
+        private String[] names;
+        private int offset;
+
+        private int name;
+        private int start;
+        private int end;
+        private int childCount;
+        private int childrenOffset;
+        private int next;
+
+        private Node(ByteBuffer buffer, String[] names, int offset) {
+            this.buffer = buffer;
+            this.names = names;
+            this.offset = offset;
+
+            int[] cursor = {offset + 1};
+            byte kind = buffer.get(offset);
+            if (kind == TokenBinary.TOKEN) {
+                this.name = TokenBinary.readVarInt(buffer, cursor);
+                if (this.name >= names.length) {
+                    throw new IllegalArgumentException("Unknown name index " + this.name + " at " + offset);
+                }
+                this.start = TokenBinary.readVarInt(buffer, cursor) - 1;
+                this.end = TokenBinary.readVarInt(buffer, cursor) - 1;
+                this.childCount = TokenBinary.readVarInt(buffer, cursor);
+                int size = buffer.getInt(cursor[0]);
+                this.childrenOffset = cursor[0] + 4;
+                this.next = this.childrenOffset + size;
+            } else if (kind == TokenBinary.VALUE) {
+                this.name = -1;
+                int length = TokenBinary.readVarInt(buffer, cursor);
+                this.start = cursor[0];
+                this.end = cursor[0] + length;
+                this.childCount = 0;
+                this.childrenOffset = this.end;
+                this.next = this.end;
+            } else {
+                throw new IllegalArgumentException("Unknown node kind " + kind + " at " + offset);
+            }
+        }
+
+        public boolean isToken() {
+            return this.name >= 0;
+        }
+
+        public String getName() {
+            return this.isToken() ? this.names[this.name] : null;
+        }
+
+        public Optional<String> getString() {
+            return this.isToken() ? Optional.empty() : Optional.of(TokenBinary.decode(this.buffer, this.start, this.end - this.start));
+        }
+
+        public int getStart() {
+            return this.isToken() ? this.start : -1;
+        }
+
+        public int getEnd() {
+            return this.isToken() ? this.end : -1;
+        }
+
+        public int getChildCount() {
+            return this.childCount;
+        }
+
+        public List<Node> getChildren() {
+            List<Node> children = new ArrayList<>(this.childCount);
+            int offset = this.childrenOffset;
+            for (int i = 0; i < this.childCount; i++) {
+                Node child = new Node(this.buffer, this.names, offset);
+                children.add(child);
+                offset = child.next;
+            }
+            return children;
+        }
+
+        public Optional<Node> first(String name) {
+            int offset = this.childrenOffset;
+            for (int i = 0; i < this.childCount; i++) {
+                Node child = new Node(this.buffer, this.names, offset);
+                if (child.isToken() && this.names[child.name].equals(name)) {
+                    return Optional.of(child);
+                }
+                offset = child.next;
+            }
+            return Optional.empty();
+        }
+
+        public List<Node> all(String name) {
+            List<Node> nodes = new ArrayList<>();
+            for (Node child : this.getChildren()) {
+                if (child.isToken() && this.names[child.name].equals(name)) {
+                    nodes.add(child);
+                }
+            }
+            return nodes;
+        }
+
+        public TokenParameters.Element toElement() {
+            return this.isToken() ? TokenParameters.element(this.toToken()) : TokenParameters.element(this.getString().get());
+        }
+
+        public Token toToken() {
+            if (!this.isToken()) {
+                throw new IllegalStateException("Node at " + this.offset + " is a value, not a token");
+            }
+
+            Deque<Node> nodes = new ArrayDeque<>();
+            Deque<Token> tokens = new ArrayDeque<>();
+            Token root = new Token(this.getName()).setSpan(this.start, this.end);
+            nodes.push(this);
+            tokens.push(root);
+            while (!nodes.isEmpty()) {
+                Node node = nodes.pop();
+                Token token = tokens.pop();
+                for (Node child : node.getChildren()) {
+                    if (child.isToken()) {
+                        Token childToken = new Token(child.getName()).setSpan(child.start, child.end);
+                        token.addElement(childToken);
+                        nodes.push(child);
+                        tokens.push(childToken);
+                    } else {
+                        token.addElement(child.getString().get());
+                    }
+                }
+            }
+            return root;
+        }
+
+        @Override
+        public String toString() {
+            return this.toElement().toString();
+        }
+
+    }
+
+}
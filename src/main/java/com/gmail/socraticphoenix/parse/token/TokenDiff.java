@@ -0,0 +1,327 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 socraticphoenix@gmail.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * @author Socratic_Phoenix (socraticphoenix@gmail.com)
+ */
+package com.gmail.socraticphoenix.parse.token;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * An edit script between two token trees. Diffing compares the structural hashes of subtrees, so any subtree whose
+ * hash is unchanged is skipped without being walked. Between the children of a token the common prefix and suffix
+ * are skipped, and the rest are paired up: pairs of tokens with the same name are diffed recursively, other pairs
+ * are replaced, and leftover elements are removed or inserted. Both {@link ImmutableToken}s and {@link Token}s cache
+ * their hashes, and tokenization computes them as tokens are built, so diffing two versions of a tree costs time
+ * proportional to the size of the change; only inserted and replacing subtrees of mutable tokens are converted to
+ * immutable ones. Source spans are not compared, and equal hashes are trusted to mean equal subtrees.
+ */
+public class TokenDiff {
+    private List<Edit> edits;
+
+    private TokenDiff(List<Edit> edits) {
+        this.edits = edits;
+    }
+
+    public static TokenDiff of(Token from, Token to) {
+        List<Edit> edits = new ArrayList<>();
+        Deque<TokenPair> stack = new ArrayDeque<>();
+        stack.push(new TokenPair(from, to, null));
+        while (!stack.isEmpty()) {
+            TokenPair pair = stack.pop();
+            Token a = pair.from;
+            Token b = pair.to;
+            if (a == b || a.structuralHash() == b.structuralHash()) {
+                continue;
+            } else if (a.getType() != b.getType()) {
+                edits.add(new Edit(Kind.REPLACE, Path.toArray(pair.path), ImmutableToken.element(ImmutableToken.of(b))));
+                continue;
+            }
+
+            TokenParameters x = a.getParameters();
+            TokenParameters y = b.getParameters();
+            int sizeA = x.size();
+            int sizeB = y.size();
+            int prefix = 0;
+            while (prefix < sizeA && prefix < sizeB && TokenDiff.same(x.get(prefix), y.get(prefix))) {
+                prefix++;
+            }
+            int suffix = 0;
+            while (suffix < sizeA - prefix && suffix < sizeB - prefix && TokenDiff.same(x.get(sizeA - suffix - 1), y.get(sizeB - suffix - 1))) {
+                suffix++;
+            }
+
+            int endA = sizeA - suffix;
+            int endB = sizeB - suffix;
+            int paired = Math.min(endA - prefix, endB - prefix);
+            for (int i = prefix; i < prefix + paired; i++) {
+                TokenParameters.Element c = x.get(i);
+                TokenParameters.Element d = y.get(i);
+                if (c.getToken().isPresent() && d.getToken().isPresent() && c.getToken().get().getType() == d.getToken().get().getType()) {
+                    stack.push(new TokenPair(c.getToken().get(), d.getToken().get(), new Path(pair.path, i)));
+                } else {
+                    edits.add(new Edit(Kind.REPLACE, Path.toArray(new Path(pair.path, i)), TokenDiff.toElement(d)));
+                }
+            }
+
+            int index = prefix + paired;
+            for (int i = index; i < endA; i++) {
+                edits.add(new Edit(Kind.REMOVE, Path.toArray(new Path(pair.path, index)), null));
+            }
+            for (int i = index; i < endB; i++) {
+                edits.add(new Edit(Kind.INSERT, Path.toArray(new Path(pair.path, i)), TokenDiff.toElement(y.get(i))));
+            }
+        }
+        return new TokenDiff(edits);
+    }
+
+    public static TokenDiff of(ImmutableToken from, ImmutableToken to) {
+        List<Edit> edits = new ArrayList<>();
+        Deque<Pair> stack = new ArrayDeque<>();
+        stack.push(new Pair(from, to, null));
+        while (!stack.isEmpty()) {
+            Pair pair = stack.pop();
+            ImmutableToken a = pair.from;
+            ImmutableToken b = pair.to;
+            if (a.structuralHash() == b.structuralHash()) {
+                continue;
+            } else if (a.getType() != b.getType()) {
+                edits.add(new Edit(Kind.REPLACE, Path.toArray(pair.path), ImmutableToken.element(b)));
+                continue;
+            }
+
+            int sizeA = a.size();
+            int sizeB = b.size();
+            int prefix = 0;
+            while (prefix < sizeA && prefix < sizeB && TokenDiff.same(a.get(prefix), b.get(prefix))) {
+                prefix++;
+            }
+            int suffix = 0;
+            while (suffix < sizeA - prefix && suffix < sizeB - prefix && TokenDiff.same(a.get(sizeA - suffix - 1), b.get(sizeB - suffix - 1))) {
+                suffix++;
+            }
+
+            int endA = sizeA - suffix;
+            int endB = sizeB - suffix;
+            int paired = Math.min(endA - prefix, endB - prefix);
+            for (int i = prefix; i < prefix + paired; i++) {
+                ImmutableToken.Element x = a.get(i);
+                ImmutableToken.Element y = b.get(i);
+                if (x.getToken().isPresent() && y.getToken().isPresent() && x.getToken().get().getType() == y.getToken().get().getType()) {
+                    stack.push(new Pair(x.getToken().get(), y.getToken().get(), new Path(pair.path, i)));
+                } else {
+                    edits.add(new Edit(Kind.REPLACE, Path.toArray(new Path(pair.path, i)), y));
+                }
+            }
+
+            int index = prefix + paired;
+            for (int i = index; i < endA; i++) {
+                edits.add(new Edit(Kind.REMOVE, Path.toArray(new Path(pair.path, index)), null));
+            }
+            for (int i = index; i < endB; i++) {
+                edits.add(new Edit(Kind.INSERT, Path.toArray(new Path(pair.path, i)), b.get(i)));
+            }
+        }
+        return new TokenDiff(edits);
+    }
+
+    private static boolean same(ImmutableToken.Element a, ImmutableToken.Element b) {
+        return a == b || a.structuralHash() == b.structuralHash();
+    }
+
+    private static boolean same(TokenParameters.Element a, TokenParameters.Element b) {
+        return a == b || a.getToken().isPresent() == b.getToken().isPresent() && a.structuralHash() == b.structuralHash();
+    }
+
+    private static ImmutableToken.Element toElement(TokenParameters.Element element) {
+        return element.getToken().isPresent() ? ImmutableToken.element(ImmutableToken.of(element.getToken().get())) : ImmutableToken.element(element.getString().get());
+    }
+
+    public List<Edit> getEdits() {
+        return Collections.unmodifiableList(this.edits);
+    }
+
+    public boolean isEmpty() {
+        return this.edits.isEmpty();
+    }
+
+    public int size() {
+        return this.edits.size();
+    }
+
+    public ImmutableToken apply(ImmutableToken token) {
+        for (Edit edit : this.edits) {
+            if (edit.path.length == 0) {
+                token = edit.element.getToken().orElseThrow(() -> new IllegalArgumentException("Cannot replace the root token with a value"));
+                continue;
+            }
+
+            int[] parentPath = Arrays.copyOf(edit.path, edit.path.length - 1);
+            int index = edit.path[edit.path.length - 1];
+            ImmutableToken parent = token.at(parentPath);
+            switch (edit.kind) {
+                case INSERT:
+                    token = token.withReplaced(parentPath, parent.withInserted(index, edit.element));
+                    break;
+                case REMOVE:
+                    token = token.withReplaced(parentPath, parent.withRemoved(index));
+                    break;
+                default:
+                    token = token.withReplaced(parentPath, parent.with(index, edit.element));
+                    break;
+            }
+        }
+        return token;
+    }
+
+    public Token apply(Token token) {
+        for (Edit edit : this.edits) {
+            if (edit.path.length == 0) {
+                token = edit.element.getToken().orElseThrow(() -> new IllegalArgumentException("Cannot replace the root token with a value")).toToken();
+                continue;
+            }
+
+            Token parent = token;
+            for (int i = 0; i < edit.path.length - 1; i++) {
+                TokenParameters.Element element = parent.getParameters().get(edit.path[i]);
+                if (!element.getToken().isPresent()) {
+                    throw new IllegalArgumentException("Element at " + edit.path[i] + " of @" + parent.getName() + " is not a token");
+                }
+                parent = element.getToken().get();
+            }
+            if (parent.isInterned()) {
+                throw new IllegalArgumentException("Cannot edit @" + parent.getName() + ", it is interned and shared");
+            }
+
+            int index = edit.path[edit.path.length - 1];
+            switch (edit.kind) {
+                case INSERT:
+                    parent.getParameters().add(index, TokenDiff.toElement(edit.element));
+                    break;
+                case REMOVE:
+                    parent.getParameters().remove(index);
+                    break;
+                default:
+                    parent.getParameters().set(index, TokenDiff.toElement(edit.element));
+                    break;
+            }
+        }
+        return token;
+    }
+
+    private static TokenParameters.Element toElement(ImmutableToken.Element element) {
+        return element.getToken().isPresent() ? TokenParameters.element(element.getToken().get().toToken()) : TokenParameters.element(element.getString().get());
+    }
+
+    @Override
+    public String toString() {
+        return this.edits.toString();
+    }
+
+    public enum Kind {
+        INSERT,
+        REMOVE,
+        REPLACE
+    }
+
+    public static final class Edit {
+        private final Kind kind;
+        private final int[] path;
+        private final ImmutableToken.Element element;
+
+        private Edit(Kind kind, int[] path, ImmutableToken.Element element) {
+            this.kind = kind;
+            this.path = path;
+            this.element = element;
+        }
+
+        public Kind getKind() {
+            return this.kind;
+        }
+
+        public int[] getPath() {
+            return this.path.clone();
+        }
+
+        public ImmutableToken.Element getElement() {
+            return this.element;
+        }
+
+        @Override
+        public String toString() {
+            return this.kind.name().toLowerCase() + " " + Arrays.toString(this.path) + (this.element == null ? "" : " " + this.element);
+        }
+
+    }
+
+    private static class TokenPair {
+        private Token from;
+        private Token to;
+        private Path path;
+
+        public TokenPair(Token from, Token to, Path path) {
+            this.from = from;
+            this.to = to;
+            this.path = path;
+        }
+
+    }
+
+    private static class Pair {
+        private ImmutableToken from;
+        private ImmutableToken to;
+        private Path path;
+
+        public Pair(ImmutableToken from, ImmutableToken to, Path path) {
+            this.from = from;
+            this.to = to;
+            this.path = path;
+        }
+
+    }
+
+    private static class Path {
+        private Path parent;
+        private int index;
+        private int depth;
+
+        public Path(Path parent, int index) {
+            this.parent = parent;
+            this.index = index;
+            this.depth = parent == null ? 1 : parent.depth + 1;
+        }
+
+        public static int[] toArray(Path path) {
+            int[] indices = new int[path == null ? 0 : path.depth];
+            for (int i = indices.length - 1; i >= 0; i--) {
+                indices[i] = path.index;
+                path = path.parent;
+            }
+            return indices;
+        }
+
+    }
+
+}
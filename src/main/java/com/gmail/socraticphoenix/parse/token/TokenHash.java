@@ -0,0 +1,78 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 socraticphoenix@gmail.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * @author Socratic_Phoenix (socraticphoenix@gmail.com)
+ */
+package com.gmail.socraticphoenix.parse.token;
+
+/**
+ * 64-bit structural hashes for token trees. A token's hash folds its type and the hashes of its elements in order,
+ * and ignores source spans, so two subtrees parsed at different offsets hash alike. Hashes are never 0, which lets
+ * callers use 0 to mark a hash which has not been computed yet.
+ */
+public final class TokenHash {
+    private static final long OFFSET = 0xCBF29CE484222325L;
+    private static final long PRIME = 0x100000001B3L;
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+    private static final long VALUE = 0x5BD1E9955BD1E995L;
+
+    private TokenHash() {
+
+    }
+
+    public static long of(String string) {
+        return TokenHash.of(string, 0, string.length());
+    }
+
+    public static long of(String source, int start, int end) {
+        long hash = TokenHash.OFFSET;
+        for (int i = start; i < end; i++) {
+            hash ^= source.charAt(i);
+            hash *= TokenHash.PRIME;
+        }
+        return TokenHash.nonZero(TokenHash.mix(hash ^ (end - start) ^ TokenHash.VALUE));
+    }
+
+    public static long start(TokenType type) {
+        return type.getHash();
+    }
+
+    public static long combine(long hash, long element) {
+        return Long.rotateLeft((hash ^ element) * TokenHash.GOLDEN, 29);
+    }
+
+    public static long finish(long hash, int size) {
+        return TokenHash.nonZero(TokenHash.mix(hash + size));
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static long nonZero(long hash) {
+        return hash == 0 ? 1 : hash;
+    }
+
+}
@@ -0,0 +1,244 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 socraticphoenix@gmail.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * @author Socratic_Phoenix (socraticphoenix@gmail.com)
+ */
+package com.gmail.socraticphoenix.parse.token;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Hash-conses token trees, so that structurally equal subtrees share a single canonical instance. Interning rewrites
+ * a tree bottom-up in place, replacing each subtree with the first equal subtree this interner has seen, so on
+ * repetitive input the tree shrinks to one instance per distinct subtree, and comparing interned subtrees reduces to
+ * an identity check. Canonical tokens keep the span of their first occurrence and cannot be modified once interned;
+ * they are {@link Token#isInterned() marked}, their parameters are frozen, and the span and transformation paths reject
+ * them. Tokens interned by another interner are taken as they are. An interner is not thread-safe.
+ */
+public class TokenInterner {
+    private Map<Key, Token> tokens;
+    private Map<Token, Key> keys;
+    private Map<Value, TokenParameters.Element> values;
+    private long hits;
+    private long misses;
+
+    public TokenInterner() {
+        this.tokens = new HashMap<>();
+        this.keys = new IdentityHashMap<>();
+        this.values = new HashMap<>();
+        this.hits = 0;
+        this.misses = 0;
+    }
+
+    public Token intern(Token token) {
+        if (this.keys.containsKey(token)) {
+            return token;
+        } else if (token.isInterned()) {
+            return this.adopt(token).token;
+        }
+
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(new Frame(token));
+        while (true) {
+            Frame frame = stack.peek();
+            TokenParameters parameters = frame.token.getParameters();
+            if (frame.index < parameters.size()) {
+                int index = frame.index++;
+                TokenParameters.Element element = parameters.get(index);
+                if (!element.getToken().isPresent()) {
+                    TokenParameters.Element value = this.intern(element);
+                    if (value != element) {
+                        parameters.set(index, value);
+                    }
+                    frame.hash = TokenHash.combine(frame.hash, value.structuralHash());
+                } else {
+                    Token child = element.getToken().get();
+                    Key key = this.keys.get(child);
+                    if (key == null && child.isInterned()) {
+                        key = this.adopt(child);
+                        if (key.token != child) {
+                            parameters.set(index, TokenParameters.element(key.token));
+                        }
+                    }
+
+                    if (key != null) {
+                        frame.hash = TokenHash.combine(frame.hash, key.hash);
+                    } else {
+                        stack.push(new Frame(child));
+                    }
+                }
+            } else {
+                stack.pop();
+                Key key = new Key(frame.token, TokenHash.finish(frame.hash, parameters.size()));
+                Token canonical = this.tokens.get(key);
+                if (canonical == null) {
+                    canonical = frame.token;
+                    canonical.markInterned();
+                    this.tokens.put(key, canonical);
+                    this.keys.put(canonical, key);
+                    this.misses++;
+                } else {
+                    this.hits++;
+                }
+
+                if (stack.isEmpty()) {
+                    return canonical;
+                }
+
+                Frame parent = stack.peek();
+                if (canonical != frame.token) {
+                    parent.token.getParameters().set(parent.index - 1, TokenParameters.element(canonical));
+                }
+                parent.hash = TokenHash.combine(parent.hash, key.hash);
+            }
+        }
+    }
+
+    private Key adopt(Token token) {
+        Key key = new Key(token, token.structuralHash());
+        Token canonical = this.tokens.get(key);
+        if (canonical == null) {
+            this.tokens.put(key, token);
+            this.keys.put(token, key);
+            this.misses++;
+            return key;
+        }
+        this.hits++;
+        return this.keys.get(canonical);
+    }
+
+    public TokenParameters.Element intern(TokenParameters.Element element) {
+        if (element.getToken().isPresent()) {
+            Token token = element.getToken().get();
+            Token canonical = this.intern(token);
+            return canonical == token ? element : TokenParameters.element(canonical);
+        }
+
+        TokenParameters.Element canonical = this.values.putIfAbsent(new Value(element), element);
+        if (canonical == null) {
+            this.misses++;
+            return element;
+        }
+        this.hits++;
+        return canonical;
+    }
+
+    public boolean isCanonical(Token token) {
+        return this.keys.containsKey(token);
+    }
+
+    public int size() {
+        return this.tokens.size() + this.values.size();
+    }
+
+    public long getHits() {
+        return this.hits;
+    }
+
+    public long getMisses() {
+        return this.misses;
+    }
+
+    public void clear() {
+        this.tokens.clear();
+        this.keys.clear();
+        this.values.clear();
+        this.hits = 0;
+        this.misses = 0;
+    }
+
+    private static class Frame {
+        private Token token;
+        private int index;
+        private long hash;
+
+        public Frame(Token token) {
+            this.token = token;
+            this.index = 0;
+            this.hash = TokenHash.start(token.getType());
+        }
+
+    }
+
+    private static class Value {
+        private TokenParameters.Element element;
+
+        public Value(TokenParameters.Element element) {
+            this.element = element;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof Value && this.element.structurallyEquals(((Value) o).element);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(this.element.structuralHash());
+        }
+
+    }
+
+    private static class Key {
+        private Token token;
+        private long hash;
+
+        public Key(Token token, long hash) {
+            this.token = token;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            } else if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) o;
+            TokenParameters a = this.token.getParameters();
+            TokenParameters b = key.token.getParameters();
+            if (this.hash != key.hash || this.token.getType() != key.token.getType() || a.size() != b.size()) {
+                return false;
+            }
+
+            for (int i = 0; i < a.size(); i++) {
+                TokenParameters.Element x = a.get(i);
+                TokenParameters.Element y = b.get(i);
+                if (x.getToken().isPresent() ? x.getToken().get() != y.getToken().orElse(null) : !x.structurallyEquals(y)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(this.hash);
+        }
+
+    }
+
+}
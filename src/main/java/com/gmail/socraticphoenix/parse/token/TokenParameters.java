@@ -22,8 +22,7 @@
  */
 package com.gmail.socraticphoenix.parse.token;
 
-import com.gmail.socraticphoenix.parse.Strings;
-
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
@@ -31,32 +30,64 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Optional;
+import java.util.RandomAccess;
 import java.util.Spliterator;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
 public class TokenParameters implements List<TokenParameters.Element> {
+    private static final AtomicLong EPOCHS = new AtomicLong();
+
     private List<Element> elements;
+    private int modifications;
+    private boolean frozen;
+    private boolean hashed;
 
     public TokenParameters() {
         this.elements = new ArrayList<>();
+        this.modifications = 0;
+    }
+
+    public int getModifications() {
+        return this.modifications;
+    }
+
+    public boolean isFrozen() {
+        return this.frozen;
+    }
+
+    static long epoch() {
+        return TokenParameters.EPOCHS.get();
+    }
+
+    void freeze() {
+        this.frozen = true;
+    }
+
+    void markHashed() {
+        this.hashed = true;
+    }
+
+    private void modify() {
+        if (this.frozen) {
+            throw new IllegalStateException("These parameters belong to an interned token, so they cannot be modified");
+        }
+        this.modifications++;
+        if (this.hashed) {
+            this.hashed = false;
+            TokenParameters.EPOCHS.incrementAndGet();
+        }
     }
 
     public List<Element> getElements() {
-        return this.elements;
+        return new View(this.elements);
     }
 
     public String write() {
-        StringBuilder builder = new StringBuilder();
-        for (int i = 0; i < this.elements.size(); i++) {
-            builder.append(this.elements.get(i).toString());
-            if(i < this.elements.size() - 1) {
-                builder.append(", ");
-            }
-        }
-        return builder.toString();
+        return TokenWriter.toString(this.elements);
     }
 
     public int size() {
@@ -68,18 +99,22 @@ public class TokenParameters implements List<TokenParameters.Element> {
     }
 
     public boolean removeIf(Predicate<? super Element> filter) {
+        this.modify();
         return elements.removeIf(filter);
     }
 
     public boolean addAll(Collection<? extends Element> c) {
+        this.modify();
         return elements.addAll(c);
     }
 
     public boolean addAll(int index, Collection<? extends Element> c) {
+        this.modify();
         return elements.addAll(index, c);
     }
 
     public boolean retainAll(Collection<?> c) {
+        this.modify();
         return elements.retainAll(c);
     }
 
@@ -92,6 +127,7 @@ public class TokenParameters implements List<TokenParameters.Element> {
     }
 
     public boolean remove(Object o) {
+        this.modify();
         return elements.remove(o);
     }
 
@@ -100,7 +136,7 @@ public class TokenParameters implements List<TokenParameters.Element> {
     }
 
     public List<Element> subList(int fromIndex, int toIndex) {
-        return elements.subList(fromIndex, toIndex);
+        return new View(elements.subList(fromIndex, toIndex));
     }
 
     public boolean contains(Object o) {
@@ -108,14 +144,17 @@ public class TokenParameters implements List<TokenParameters.Element> {
     }
 
     public void replaceAll(UnaryOperator<Element> operator) {
+        this.modify();
         elements.replaceAll(operator);
     }
 
     public void add(int index, Element element) {
+        this.modify();
         elements.add(index, element);
     }
 
     public boolean removeAll(Collection<?> c) {
+        this.modify();
         return elements.removeAll(c);
     }
 
@@ -124,18 +163,37 @@ public class TokenParameters implements List<TokenParameters.Element> {
     }
 
     public Iterator<Element> iterator() {
-        return elements.iterator();
+        Iterator<Element> iterator = elements.iterator();
+        return new Iterator<Element>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Element next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void remove() {
+                TokenParameters.this.modify();
+                iterator.remove();
+            }
+        };
     }
 
     public ListIterator<Element> listIterator(int index) {
-        return elements.listIterator(index);
+        return new View(elements).listIterator(index);
     }
 
     public void sort(Comparator<? super Element> c) {
+        this.modify();
         elements.sort(c);
     }
 
     public Element remove(int index) {
+        this.modify();
         return elements.remove(index);
     }
 
@@ -144,6 +202,7 @@ public class TokenParameters implements List<TokenParameters.Element> {
     }
 
     public void clear() {
+        this.modify();
         elements.clear();
     }
 
@@ -152,14 +211,20 @@ public class TokenParameters implements List<TokenParameters.Element> {
     }
 
     public Element set(int index, Element element) {
+        this.modify();
         return elements.set(index, element);
     }
 
+    void respan(int index, Element element) {
+        this.elements.set(index, element);
+    }
+
     public <T> T[] toArray(T[] a) {
         return elements.toArray(a);
     }
 
     public boolean add(Element element) {
+        this.modify();
         return elements.add(element);
     }
 
@@ -168,7 +233,7 @@ public class TokenParameters implements List<TokenParameters.Element> {
     }
 
     public ListIterator<Element> listIterator() {
-        return elements.listIterator();
+        return new View(elements).listIterator();
     }
 
     public void forEach(Consumer<? super Element> action) {
@@ -187,13 +252,90 @@ public class TokenParameters implements List<TokenParameters.Element> {
         return new Element(token);
     }
 
+    public static Element element(String source, int start, int end) {
+        return new Element(source, start, end);
+    }
+
+    private class View extends AbstractList<Element> implements RandomAccess {
+        private List<Element> elements;
+
+        public View(List<Element> elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        public Element get(int index) {
+            return this.elements.get(index);
+        }
+
+        @Override
+        public int size() {
+            return this.elements.size();
+        }
+
+        @Override
+        public Element set(int index, Element element) {
+            TokenParameters.this.modify();
+            return this.elements.set(index, element);
+        }
+
+        @Override
+        public void add(int index, Element element) {
+            TokenParameters.this.modify();
+            this.modCount++;
+            this.elements.add(index, element);
+        }
+
+        @Override
+        public Element remove(int index) {
+            TokenParameters.this.modify();
+            this.modCount++;
+            return this.elements.remove(index);
+        }
+
+        @Override
+        public void clear() {
+            TokenParameters.this.modify();
+            this.modCount++;
+            this.elements.clear();
+        }
+
+    }
+
     public static class Element {
         private Optional<String> string;
         private Optional<Token> token;
 
+        private String source;
+        private int start;
+        private int end;
+        private int offset;
+
+        private long hash;
+
         public Element(String string) {
             this.string = Optional.of(string);
             this.token = Optional.empty();
+            this.source = string;
+            this.start = -1;
+            this.end = -1;
+        }
+
+        public Element(String source, int start, int end) {
+            this(source, start, end, 0);
+        }
+
+        private Element(String source, int start, int end, int offset) {
+            if (start - offset < 0 || end < start || end - offset > source.length()) {
+                throw new IndexOutOfBoundsException("Span [" + (start - offset) + ", " + (end - offset) + ") is outside of the source");
+            }
+
+            this.string = null;
+            this.token = Optional.empty();
+            this.source = source;
+            this.start = start;
+            this.end = end;
+            this.offset = offset;
         }
 
         public Element(Token token) {
@@ -202,6 +344,9 @@ public class TokenParameters implements List<TokenParameters.Element> {
         }
 
         public Optional<String> getString() {
+            if (this.string == null) {
+                this.string = Optional.of(this.source.substring(this.getSourceStart(), this.getSourceEnd()));
+            }
             return this.string;
         }
 
@@ -209,14 +354,73 @@ public class TokenParameters implements List<TokenParameters.Element> {
             return this.token;
         }
 
-        public String toString() {
-            if(this.getString().isPresent()) {
-                return "\"".concat(Strings.escape(this.getString().get())).concat("\"");
-            } else if (this.getToken().isPresent()) {
-                return this.getToken().get().write();
-            } else {
-                return null;
+        public String getSource() {
+            return this.source;
+        }
+
+        public int getStart() {
+            return this.token.isPresent() ? this.token.get().getStart() : this.start;
+        }
+
+        public int getEnd() {
+            return this.token.isPresent() ? this.token.get().getEnd() : this.end;
+        }
+
+        public boolean hasSpan() {
+            return this.token.isPresent() ? this.token.get().hasSpan() : this.start >= 0;
+        }
+
+        public int getSourceStart() {
+            return this.start - this.offset;
+        }
+
+        public int getSourceEnd() {
+            return this.end - this.offset;
+        }
+
+        Element shifted(int delta) {
+            if (this.token.isPresent() || this.start < 0) {
+                return this;
+            }
+
+            Element element = new Element(this.source, this.start + delta, this.end + delta, this.offset + delta);
+            element.string = this.string;
+            element.hash = this.hash;
+            return element;
+        }
+
+        public long structuralHash() {
+            if (this.token.isPresent()) {
+                return this.token.get().structuralHash();
+            } else if (this.hash == 0) {
+                this.hash = TokenHash.of(this.source, this.valueStart(), this.valueEnd());
             }
+            return this.hash;
+        }
+
+        public boolean structurallyEquals(Element element) {
+            if (this == element) {
+                return true;
+            } else if (element == null) {
+                return false;
+            } else if (this.token.isPresent() || element.token.isPresent()) {
+                return this.token.isPresent() && element.token.isPresent() && this.token.get().structurallyEquals(element.token.get());
+            }
+            int length = this.valueEnd() - this.valueStart();
+            return this.structuralHash() == element.structuralHash() && length == element.valueEnd() - element.valueStart() &&
+                    this.source.regionMatches(this.valueStart(), element.source, element.valueStart(), length);
+        }
+
+        private int valueStart() {
+            return this.start < 0 ? 0 : this.getSourceStart();
+        }
+
+        private int valueEnd() {
+            return this.start < 0 ? this.source.length() : this.getSourceEnd();
+        }
+
+        public String toString() {
+            return TokenWriter.toString(this);
         }
     }
 
@@ -0,0 +1,173 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 socraticphoenix@gmail.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * @author Socratic_Phoenix (socraticphoenix@gmail.com)
+ */
+package com.gmail.socraticphoenix.parse.token;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * A compiled query over the children of a {@link Token}. A path is a sequence of steps separated by {@code /}, each
+ * selecting child tokens of the tokens selected by the previous step. A step is {@code @name} or {@code @*} (any name),
+ * optionally followed by a selector: {@code [*]} selects every match, {@code [n]} the n-th match (from 0), and no
+ * selector the first match. For example, {@code @stmt/@call[*]/@arg} selects the first {@code arg} of every {@code
+ * call} in the first {@code stmt}. Named steps use each token's child index, and evaluation may run steps in parallel
+ * once the set of selected tokens grows beyond {@link #PARALLEL_THRESHOLD}.
+ */
+public class TokenPath {
+    public static final int PARALLEL_THRESHOLD = 512;
+
+    private static final int ALL = -1;
+
+    private String path;
+    private Step[] steps;
+
+    private TokenPath(String path, Step[] steps) {
+        this.path = path;
+        this.steps = steps;
+    }
+
+    public static TokenPath compile(String path) {
+        if (path.isEmpty()) {
+            throw new IllegalArgumentException("Token path cannot be empty");
+        }
+
+        String[] pieces = path.split("/", -1);
+        Step[] steps = new Step[pieces.length];
+        for (int i = 0; i < pieces.length; i++) {
+            steps[i] = TokenPath.step(path, pieces[i]);
+        }
+        return new TokenPath(path, steps);
+    }
+
+    private static Step step(String path, String piece) {
+        if (!piece.startsWith(Token.TOKEN_PREFIX)) {
+            throw new IllegalArgumentException("Step \"" + piece + "\" of token path \"" + path + "\" does not start with token prefix \"" + Token.TOKEN_PREFIX + "\"");
+        }
+
+        String name = piece.substring(Token.TOKEN_PREFIX.length());
+        int selector = 0;
+        int bracket = name.indexOf('[');
+        if (bracket != -1) {
+            if (!name.endsWith("]")) {
+                throw new IllegalArgumentException("Unclosed selector in step \"" + piece + "\" of token path \"" + path + "\"");
+            }
+
+            String index = name.substring(bracket + 1, name.length() - 1);
+            name = name.substring(0, bracket);
+            if (index.equals("*")) {
+                selector = TokenPath.ALL;
+            } else {
+                try {
+                    selector = Integer.parseInt(index);
+                } catch (NumberFormatException e) {
+                    selector = -2;
+                }
+                if (selector < 0) {
+                    throw new IllegalArgumentException("Invalid selector \"[" + index + "]\" in step \"" + piece + "\" of token path \"" + path + "\"");
+                }
+            }
+        }
+
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Step \"" + piece + "\" of token path \"" + path + "\" has no name");
+        }
+        return new Step(name.equals("*") ? null : TokenType.of(name), selector);
+    }
+
+    public List<Token> evaluate(Token token) {
+        return this.evaluate(token, false);
+    }
+
+    public List<Token> evaluateParallel(Token token) {
+        return this.evaluate(token, true);
+    }
+
+    public List<Token> evaluate(Token token, boolean parallel) {
+        List<Token> selected = Collections.singletonList(token);
+        for (Step step : this.steps) {
+            if (parallel && selected.size() >= TokenPath.PARALLEL_THRESHOLD) {
+                selected = selected.parallelStream().flatMap(t -> step.select(t).stream()).collect(Collectors.toList());
+            } else {
+                List<Token> next = new ArrayList<>();
+                for (Token t : selected) {
+                    next.addAll(step.select(t));
+                }
+                selected = next;
+            }
+
+            if (selected.isEmpty()) {
+                break;
+            }
+        }
+        return selected;
+    }
+
+    public Optional<Token> first(Token token) {
+        List<Token> selected = this.evaluate(token);
+        return selected.isEmpty() ? Optional.empty() : Optional.of(selected.get(0));
+    }
+
+    public String getPath() {
+        return this.path;
+    }
+
+    @Override
+    public String toString() {
+        return this.path;
+    }
+
+    private static class Step {
+        private TokenType type;
+        private int selector;
+
+        public Step(TokenType type, int selector) {
+            this.type = type;
+            this.selector = selector;
+        }
+
+        public List<Token> select(Token token) {
+            List<Token> matches;
+            if (this.type == null) {
+                matches = new ArrayList<>();
+                for (TokenParameters.Element element : token.getParameters()) {
+                    element.getToken().ifPresent(matches::add);
+                }
+            } else {
+                matches = token.indexed(this.type);
+            }
+
+            if (this.selector == TokenPath.ALL) {
+                return matches;
+            } else if (this.selector < matches.size()) {
+                return Collections.singletonList(matches.get(this.selector));
+            } else {
+                return Collections.emptyList();
+            }
+        }
+
+    }
+
+}
@@ -22,27 +22,30 @@
  */
 package com.gmail.socraticphoenix.parse.token;
 
-import com.gmail.socraticphoenix.collect.Items;
-import com.gmail.socraticphoenix.parse.CharacterStream;
-import com.gmail.socraticphoenix.parse.ParserData;
+import com.gmail.socraticphoenix.parse.EscapeCodec;
 import com.gmail.socraticphoenix.parse.Strings;
 
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.function.Predicate;
-import java.util.regex.Pattern;
 
 public class TokenReader {
-    private static ParserData parserData = Strings.javaEscapeFormat()
-            .brackets('(', ')')
-            .quote('"');
-    private CharacterStream stream;
+    private static final String NULL = "null";
+
+    private String string;
+    private int index;
     private Predicate<String> tokenName;
     private Predicate<String> tokenValue;
+    private EscapeCodec codec;
+    private StringBuilder builder;
 
     public TokenReader(String tokenString, Predicate<String> tokenName, Predicate<String> tokenValue) throws TokenizerException {
-        this.stream = new CharacterStream(tokenString);
+        this.string = tokenString;
+        this.index = 0;
         this.tokenName = tokenName;
         this.tokenValue = tokenValue;
+        this.codec = Strings.javaEscapeCodec();
+        this.builder = new StringBuilder();
     }
 
     public TokenReader(String tokenString) throws TokenizerException {
@@ -50,49 +53,180 @@ public class TokenReader {
     }
 
     public Token nextToken() throws TokenizerException {
+        Deque<Frame> stack = new ArrayDeque<>();
+        Token root = this.openToken();
+        stack.push(new Frame(root));
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            this.skipWhitespace();
+            if (this.peek() == ')') {
+                this.index++;
+                stack.pop();
+                continue;
+            }
+
+            if (frame.any) {
+                this.expect(',');
+                this.skipWhitespace();
+            }
+            frame.any = true;
+
+            char c = this.peek();
+            if (c == Token.TOKEN_PREFIX.charAt(0)) {
+                Token child = this.openToken();
+                frame.token.addElement(child);
+                stack.push(new Frame(child));
+            } else if (c == '"') {
+                frame.token.addElement(this.nextString());
+            } else if (this.string.startsWith(TokenReader.NULL, this.index)) {
+                this.index += TokenReader.NULL.length();
+            } else {
+                throw this.error("Expected token, string or \")\" but found '" + c + "'");
+            }
+        }
+        return root;
+    }
+
+    public boolean hasNext() {
+        this.skipWhitespace();
+        return this.index < this.string.length();
+    }
+
+    public String nextTokenName() throws TokenizerException {
+        this.skipWhitespace();
+        if (!this.string.startsWith(Token.TOKEN_PREFIX, this.index)) {
+            throw this.error("Token does not start with token prefix \"" + Token.TOKEN_PREFIX + "\"");
+        }
+
+        int start = this.index + Token.TOKEN_PREFIX.length();
+        int end = this.string.indexOf('(', start);
+        if (end == -1) {
+            throw this.error("Token name is not followed by \"(\"");
+        }
+        this.index = end;
+
+        while (end > start && this.string.charAt(end - 1) == ' ') {
+            end--;
+        }
+        String name = this.string.substring(start, end);
+        if (!this.tokenName.test(name)) {
+            throw this.error("Token name \"" + name + "\" is not allowed");
+        }
+        return name;
+    }
+
+    private Token openToken() throws TokenizerException {
+        int start = this.index;
         String name = this.nextTokenName();
-        this.stream.consumeAll(' ');
-        String param = this.nextTokenParameter();
-        Token token = new Token(name);
-        List<String> params = Items.buildList(param);
-        while (this.stream.hasNext()) {
-            String nextParam = this.nextTokenParameter();
-            params.add(nextParam);
+        this.index++;
+
+        try {
+            return new Token(name);
+        } catch (IllegalArgumentException e) {
+            throw new TokenizerException(e.getMessage(), start);
         }
-        this.stream.back();
+    }
+
+    private String nextString() throws TokenizerException {
+        char escapeChar = this.codec.getEscapeChar();
+        char unicodeEscapeChar = this.codec.getUnicodeEscapeChar();
+        int start = this.index;
+        int run = ++this.index;
+        boolean escaped = false;
+        this.builder.setLength(0);
+
+        while (true) {
+            if (this.index >= this.string.length()) {
+                throw new TokenizerException("Unterminated string", start);
+            }
+
+            char c = this.string.charAt(this.index);
+            if (c == '"') {
+                break;
+            } else if (c == escapeChar) {
+                if (this.index + 1 >= this.string.length()) {
+                    throw new TokenizerException("Unterminated string", start);
+                }
 
-        for (String s : params) {
-            if (!s.equals("") && !s.equals("null")) {
-                if (s.startsWith(Token.TOKEN_PREFIX)) {
-                    TokenReader tokenReader = new TokenReader(s, this.tokenName, this.tokenValue);
-                    token.addElement(tokenReader.nextToken());
+                escaped = true;
+                this.builder.append(this.string, run, this.index);
+                char code = this.string.charAt(this.index + 1);
+                int value;
+                if (code == unicodeEscapeChar && (value = this.hex(this.index + 2)) != -1) {
+                    this.builder.append((char) value);
+                    this.index += 6;
                 } else {
-                    token.addElement(Strings.deEscape(Strings.cutLast(s.substring(1))));
+                    String literal = code == unicodeEscapeChar ? null : this.codec.literal(code);
+                    if (literal != null) {
+                        this.builder.append(literal);
+                    } else {
+                        this.builder.append(escapeChar).append(code);
+                    }
+                    this.index += 2;
                 }
+                run = this.index;
+            } else {
+                this.index++;
             }
         }
 
-        return token;
+        String value = escaped ? this.builder.append(this.string, run, this.index).toString() : this.string.substring(run, this.index);
+        this.index++;
+        if (!this.tokenValue.test(value)) {
+            throw new TokenizerException("Token value \"" + Strings.escape(value) + "\" is not allowed", start);
+        }
+        return value;
     }
 
-    public boolean hasNext() {
-        return this.stream.hasNext();
+    private int hex(int start) {
+        if (start + 4 > this.string.length()) {
+            return -1;
+        }
+
+        int value = 0;
+        for (int i = start; i < start + 4; i++) {
+            int digit = Character.digit(this.string.charAt(i), 16);
+            if (digit == -1) {
+                return -1;
+            }
+            value = value * 16 + digit;
+        }
+        return value;
     }
 
-    public String nextTokenName() throws TokenizerException {
-        this.stream.consumeAll(' ');
-        String value = this.stream.nextUntil('(');
-        this.stream.consumeAll(' ');
-        if (!value.startsWith(Token.TOKEN_PREFIX)) {
-            throw new TokenizerException("Token \"" + value + "\" does not start with token prefix \"" + Token.TOKEN_PREFIX + "\"");
+    private char peek() throws TokenizerException {
+        if (this.index >= this.string.length()) {
+            throw this.error("Unexpected end of input");
         }
+        return this.string.charAt(this.index);
+    }
 
-        return value.replaceFirst(Pattern.quote(Token.TOKEN_PREFIX), "");
+    private void expect(char c) throws TokenizerException {
+        if (this.peek() != c) {
+            throw this.error("Expected '" + c + "' but found '" + this.peek() + "'");
+        }
+        this.index++;
     }
 
-    public String nextTokenParameter() {
-        return this.stream.nextUntil(c -> c == ',', TokenReader.parserData.reset());
+    private void skipWhitespace() {
+        while (this.index < this.string.length() && Character.isWhitespace(this.string.charAt(this.index))) {
+            this.index++;
+        }
     }
 
+    private TokenizerException error(String message) {
+        return new TokenizerException(message, this.index);
+    }
+
+    private static class Frame {
+        private Token token;
+        private boolean any;
+
+        public Frame(Token token) {
+            this.token = token;
+            this.any = false;
+        }
+
+    }
 
 }
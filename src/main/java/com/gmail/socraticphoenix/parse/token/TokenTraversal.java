@@ -0,0 +1,345 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 socraticphoenix@gmail.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * @author Socratic_Phoenix (socraticphoenix@gmail.com)
+ */
+package com.gmail.socraticphoenix.parse.token;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Walks token trees with a {@link TokenVisitor} or rewrites them with a {@link TokenTransformer}. A visitor sees each
+ * token before its children, and may return false to skip them; {@link TokenVisitor#leave(Token)} is called after the
+ * children. A transformer sees each token after its children have been transformed, and returns the token to put in
+ * its place, or null to remove it. The static methods walk the tree sequentially with an explicit stack. The parallel
+ * methods first count the tokens in each subtree, then walk the tree with the same explicit stack, forking the
+ * children of a token onto a {@link ForkJoinPool} when at least two of them have subtrees of at least {@code threshold}
+ * tokens and the pool is not saturated. Everything else is walked by the task that reached it, so no task recurses,
+ * however deep the tree. Visitors and transformers used in parallel must be thread-safe and must not depend on the
+ * order in which siblings are processed. Transformations rewrite tokens in place, so they reject trees containing
+ * {@link Token#isInterned() interned} tokens, which may be shared between several parents.
+ */
+public class TokenTraversal {
+    public static final int DEFAULT_THRESHOLD = 1024;
+
+    private static final int SURPLUS = 3;
+
+    private ForkJoinPool pool;
+    private int threshold;
+
+    public TokenTraversal(ForkJoinPool pool, int threshold) {
+        this.pool = pool;
+        this.threshold = Math.max(threshold, 1);
+    }
+
+    public TokenTraversal() {
+        this(ForkJoinPool.commonPool(), TokenTraversal.DEFAULT_THRESHOLD);
+    }
+
+    public static void visit(Token token, TokenVisitor visitor) {
+        Deque<Frame> stack = new ArrayDeque<>();
+        if (visitor.visit(token)) {
+            stack.push(new Frame(token));
+        }
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            TokenParameters parameters = frame.token.getParameters();
+            if (frame.index < parameters.size()) {
+                TokenParameters.Element element = parameters.get(frame.index++);
+                if (element.getToken().isPresent() && visitor.visit(element.getToken().get())) {
+                    stack.push(new Frame(element.getToken().get()));
+                }
+            } else {
+                stack.pop();
+                visitor.leave(frame.token);
+            }
+        }
+    }
+
+    public static Token transform(Token token, TokenTransformer transformer) {
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(new Frame(TokenTraversal.mutable(token)));
+        while (true) {
+            Frame frame = stack.peek();
+            TokenParameters parameters = frame.token.getParameters();
+            if (frame.index < parameters.size()) {
+                TokenParameters.Element element = parameters.get(frame.index++);
+                if (element.getToken().isPresent()) {
+                    stack.push(new Frame(TokenTraversal.mutable(element.getToken().get())));
+                }
+            } else {
+                stack.pop();
+                Token result = transformer.transform(frame.token);
+                if (stack.isEmpty()) {
+                    return result;
+                }
+
+                Frame parent = stack.peek();
+                int index = parent.index - 1;
+                if (result == null) {
+                    parent.token.getParameters().remove(index);
+                    parent.index--;
+                } else if (result != frame.token) {
+                    parent.token.getParameters().set(index, TokenParameters.element(result));
+                }
+            }
+        }
+    }
+
+    public void visitParallel(Token token, TokenVisitor visitor) {
+        this.pool.invoke(new VisitTask(token, visitor, this.sizes(token, false)));
+    }
+
+    public Token transformParallel(Token token, TokenTransformer transformer) {
+        TransformTask task = new TransformTask(token, transformer, this.sizes(token, true));
+        this.pool.invoke(task);
+        return task.result;
+    }
+
+    private static Token mutable(Token token) {
+        if (token.isInterned()) {
+            throw new IllegalArgumentException("Cannot transform @" + token.getName() + ", it is interned and shared");
+        }
+        return token;
+    }
+
+    private Map<Token, Integer> sizes(Token token, boolean mutable) {
+        Map<Token, Integer> sizes = new IdentityHashMap<>();
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(new Frame(mutable ? TokenTraversal.mutable(token) : token));
+        while (true) {
+            Frame frame = stack.peek();
+            TokenParameters parameters = frame.token.getParameters();
+            if (frame.index < parameters.size()) {
+                TokenParameters.Element element = parameters.get(frame.index++);
+                if (element.getToken().isPresent()) {
+                    Token child = element.getToken().get();
+                    stack.push(new Frame(mutable ? TokenTraversal.mutable(child) : child));
+                }
+            } else {
+                stack.pop();
+                int size = frame.size + 1;
+                if (size >= this.threshold) {
+                    sizes.put(frame.token, size);
+                }
+                if (stack.isEmpty()) {
+                    return sizes;
+                }
+                stack.peek().size += size;
+            }
+        }
+    }
+
+    private int[] forks(Token token, Map<Token, Integer> sizes) {
+        if (!sizes.containsKey(token) || ForkJoinTask.getSurplusQueuedTaskCount() > TokenTraversal.SURPLUS) {
+            return null;
+        }
+
+        TokenParameters parameters = token.getParameters();
+        int[] forks = new int[parameters.size()];
+        int count = 0;
+        for (int i = 0; i < parameters.size(); i++) {
+            TokenParameters.Element element = parameters.get(i);
+            if (element.getToken().isPresent() && sizes.containsKey(element.getToken().get())) {
+                forks[count++] = i;
+            }
+        }
+        return count >= 2 ? Arrays.copyOf(forks, count) : null;
+    }
+
+    private static class Frame {
+        private Token token;
+        private int index;
+        private int size;
+
+        public Frame(Token token) {
+            this.token = token;
+            this.index = 0;
+        }
+
+    }
+
+    private static class Branch<T extends RecursiveAction> {
+        private Token token;
+        private int index;
+        private int[] forks;
+        private T[] tasks;
+        private int next;
+        private Token[] results;
+
+        public Branch(Token token, int[] forks, T[] tasks) {
+            this.token = token;
+            this.forks = forks;
+            this.tasks = tasks;
+        }
+
+        public boolean isForked(int index) {
+            if (this.forks != null && this.next < this.forks.length && this.forks[this.next] == index) {
+                this.next++;
+                return true;
+            }
+            return false;
+        }
+
+        public void join() {
+            if (this.tasks != null) {
+                for (T task : this.tasks) {
+                    task.join();
+                }
+            }
+        }
+
+    }
+
+    private class VisitTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private Token token;
+        private TokenVisitor visitor;
+        private Map<Token, Integer> sizes;
+
+        public VisitTask(Token token, TokenVisitor visitor, Map<Token, Integer> sizes) {
+            this.token = token;
+            this.visitor = visitor;
+            this.sizes = sizes;
+        }
+
+        @Override
+        protected void compute() {
+            Deque<Branch<VisitTask>> stack = new ArrayDeque<>();
+            if (this.visitor.visit(this.token)) {
+                stack.push(this.branch(this.token));
+            }
+            while (!stack.isEmpty()) {
+                Branch<VisitTask> branch = stack.peek();
+                TokenParameters parameters = branch.token.getParameters();
+                if (branch.index < parameters.size()) {
+                    int index = branch.index++;
+                    TokenParameters.Element element = parameters.get(index);
+                    if (element.getToken().isPresent() && !branch.isForked(index) && this.visitor.visit(element.getToken().get())) {
+                        stack.push(this.branch(element.getToken().get()));
+                    }
+                } else {
+                    stack.pop();
+                    branch.join();
+                    this.visitor.leave(branch.token);
+                }
+            }
+        }
+
+        private Branch<VisitTask> branch(Token token) {
+            int[] forks = TokenTraversal.this.forks(token, this.sizes);
+            VisitTask[] tasks = null;
+            if (forks != null) {
+                tasks = new VisitTask[forks.length];
+                for (int i = 0; i < forks.length; i++) {
+                    tasks[i] = new VisitTask(token.getParameters().get(forks[i]).getToken().get(), this.visitor, this.sizes);
+                    tasks[i].fork();
+                }
+            }
+            return new Branch<>(token, forks, tasks);
+        }
+
+    }
+
+    private class TransformTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private Token token;
+        private TokenTransformer transformer;
+        private Map<Token, Integer> sizes;
+        private Token result;
+
+        public TransformTask(Token token, TokenTransformer transformer, Map<Token, Integer> sizes) {
+            this.token = token;
+            this.transformer = transformer;
+            this.sizes = sizes;
+        }
+
+        @Override
+        protected void compute() {
+            Deque<Branch<TransformTask>> stack = new ArrayDeque<>();
+            stack.push(this.branch(this.token));
+            while (true) {
+                Branch<TransformTask> branch = stack.peek();
+                TokenParameters parameters = branch.token.getParameters();
+                if (branch.index < parameters.size()) {
+                    int index = branch.index++;
+                    TokenParameters.Element element = parameters.get(index);
+                    if (element.getToken().isPresent() && !branch.isForked(index)) {
+                        stack.push(this.branch(element.getToken().get()));
+                    }
+                    continue;
+                }
+
+                stack.pop();
+                branch.join();
+                if (branch.forks != null) {
+                    for (int i = 0; i < branch.forks.length; i++) {
+                        branch.results[branch.forks[i]] = branch.tasks[i].result;
+                    }
+                }
+                for (int i = parameters.size() - 1; i >= 0; i--) {
+                    TokenParameters.Element element = parameters.get(i);
+                    if (element.getToken().isPresent()) {
+                        Token result = branch.results[i];
+                        if (result == null) {
+                            parameters.remove(i);
+                        } else if (result != element.getToken().get()) {
+                            parameters.set(i, TokenParameters.element(result));
+                        }
+                    }
+                }
+
+                Token result = this.transformer.transform(branch.token);
+                if (stack.isEmpty()) {
+                    this.result = result;
+                    return;
+                }
+                Branch<TransformTask> parent = stack.peek();
+                parent.results[parent.index - 1] = result;
+            }
+        }
+
+        private Branch<TransformTask> branch(Token token) {
+            int[] forks = TokenTraversal.this.forks(token, this.sizes);
+            TransformTask[] tasks = null;
+            if (forks != null) {
+                tasks = new TransformTask[forks.length];
+                for (int i = 0; i < forks.length; i++) {
+                    tasks[i] = new TransformTask(token.getParameters().get(forks[i]).getToken().get(), this.transformer, this.sizes);
+                    tasks[i].fork();
+                }
+            }
+            Branch<TransformTask> branch = new Branch<>(token, forks, tasks);
+            branch.results = new Token[token.getParameters().size()];
+            return branch;
+        }
+
+    }
+
+}
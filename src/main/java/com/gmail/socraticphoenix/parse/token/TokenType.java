@@ -0,0 +1,147 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 socraticphoenix@gmail.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * @author Socratic_Phoenix (socraticphoenix@gmail.com)
+ */
+package com.gmail.socraticphoenix.parse.token;
+
+import com.gmail.socraticphoenix.parse.Strings;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An interned token name. Each name is validated once, when its type is first created, and is given a unique int id,
+ * so tokens of the same type can be compared by identity or id rather than by name. Types are registered weakly: once
+ * nothing refers to a type, its name and id are released, so names read from untrusted input do not accumulate.
+ */
+public final class TokenType {
+    private static final Map<String, Ref> types = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<TokenType> released = new ReferenceQueue<>();
+    private static final Deque<Integer> free = new ArrayDeque<>();
+    private static volatile Ref[] ids = new Ref[16];
+    private static int count;
+
+    private String name;
+    private int id;
+    private long hash;
+
+    private TokenType(String name, int id) {
+        this.name = name;
+        this.id = id;
+        this.hash = TokenHash.of(name);
+    }
+
+    public static TokenType of(String name) {
+        TokenType type = TokenType.lookup(name);
+        return type != null ? type : TokenType.create(name);
+    }
+
+    public static Optional<TokenType> get(String name) {
+        return Optional.ofNullable(TokenType.lookup(name));
+    }
+
+    public static TokenType byId(int id) {
+        Ref[] ids = TokenType.ids;
+        TokenType type = id >= 0 && id < ids.length && ids[id] != null ? ids[id].get() : null;
+        if (type == null) {
+            throw new IllegalArgumentException("No token type has id " + id);
+        }
+        return type;
+    }
+
+    private static TokenType lookup(String name) {
+        Ref ref = TokenType.types.get(name);
+        return ref == null ? null : ref.get();
+    }
+
+    private static TokenType create(String name) {
+        if (!name.equals(Strings.escape(name))) {
+            throw new IllegalArgumentException("Tokens cannot have names that require escaping (\"".concat(name).concat("\" was not equal to \"".concat(Strings.escape(name)).concat("\")")));
+        }
+
+        synchronized (TokenType.types) {
+            TokenType.expunge();
+            TokenType type = TokenType.lookup(name);
+            if (type == null) {
+                Ref[] ids = TokenType.ids;
+                int id = TokenType.free.isEmpty() ? TokenType.count++ : TokenType.free.pop();
+                if (id == ids.length) {
+                    ids = Arrays.copyOf(ids, ids.length * 2);
+                }
+                type = new TokenType(name, id);
+                Ref ref = new Ref(type, TokenType.released);
+                ids[id] = ref;
+                TokenType.ids = ids;
+                TokenType.types.put(name, ref);
+            }
+            return type;
+        }
+    }
+
+    private static void expunge() {
+        Reference<? extends TokenType> reference;
+        while ((reference = TokenType.released.poll()) != null) {
+            Ref ref = (Ref) reference;
+            TokenType.types.remove(ref.name, ref);
+            if (TokenType.ids[ref.id] == ref) {
+                TokenType.ids[ref.id] = null;
+                TokenType.free.push(ref.id);
+            }
+        }
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public long getHash() {
+        return this.hash;
+    }
+
+    public int getId() {
+        return this.id;
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+
+    private static class Ref extends WeakReference<TokenType> {
+        private String name;
+        private int id;
+
+        public Ref(TokenType type, ReferenceQueue<TokenType> queue) {
+            super(type, queue);
+            this.name = type.name;
+            this.id = type.id;
+        }
+
+    }
+
+}
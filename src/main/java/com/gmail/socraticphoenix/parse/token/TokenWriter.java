@@ -0,0 +1,229 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 socraticphoenix@gmail.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * @author Socratic_Phoenix (socraticphoenix@gmail.com)
+ */
+package com.gmail.socraticphoenix.parse.token;
+
+import com.gmail.socraticphoenix.parse.EscapeCodec;
+import com.gmail.socraticphoenix.parse.Strings;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Writes tokens in the textual format read by {@link Token#parse(String)} directly to an {@link Appendable}. Trees are
+ * walked with an explicit stack rather than recursion, so arbitrarily deep tokens can be written, and values are
+ * escaped in a single pass straight into the output, from their source spans where available.
+ */
+public class TokenWriter {
+    private static final String INDENT = "    ";
+
+    private Appendable out;
+    private EscapeCodec codec;
+    private String lineSeparator;
+    private StringBuilder indentation;
+
+    public TokenWriter(Appendable out, EscapeCodec codec) {
+        this.out = out;
+        this.codec = codec;
+        this.lineSeparator = System.lineSeparator();
+        this.indentation = new StringBuilder();
+    }
+
+    public TokenWriter(Appendable out) {
+        this(out, Strings.javaEscapeCodec());
+    }
+
+    public TokenWriter write(Token token) throws IOException {
+        Deque<Frame> stack = new ArrayDeque<>();
+        this.open(token);
+        stack.push(new Frame(token));
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            List<TokenParameters.Element> elements = frame.token.getParameters();
+            if (frame.index < elements.size()) {
+                TokenParameters.Element element = elements.get(frame.index++);
+                if (frame.index > 1) {
+                    this.out.append(", ");
+                }
+
+                if (element.getToken().isPresent()) {
+                    Token child = element.getToken().get();
+                    this.open(child);
+                    stack.push(new Frame(child));
+                } else {
+                    this.writeValue(element);
+                }
+            } else {
+                this.out.append(')');
+                stack.pop();
+            }
+        }
+        return this;
+    }
+
+    public TokenWriter write(TokenParameters.Element element) throws IOException {
+        if (element.getToken().isPresent()) {
+            return this.write(element.getToken().get());
+        } else if (element.getSource() != null) {
+            this.writeValue(element);
+        } else {
+            this.out.append("null");
+        }
+        return this;
+    }
+
+    public TokenWriter write(List<TokenParameters.Element> elements) throws IOException {
+        for (int i = 0; i < elements.size(); i++) {
+            if (i > 0) {
+                this.out.append(", ");
+            }
+            this.write(elements.get(i));
+        }
+        return this;
+    }
+
+    public TokenWriter writePretty(Token token) throws IOException {
+        return this.writePretty(token, 0);
+    }
+
+    public TokenWriter writePretty(Token token, int indent) throws IOException {
+        Deque<Frame> stack = new ArrayDeque<>();
+        this.openPretty(token, indent);
+        stack.push(new Frame(token));
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            int depth = indent + stack.size() - 1;
+            List<TokenParameters.Element> elements = frame.token.getParameters();
+            if (frame.index < elements.size()) {
+                TokenParameters.Element element = elements.get(frame.index++);
+                if (frame.index > 1) {
+                    this.out.append(',').append(this.lineSeparator);
+                }
+
+                if (element.getToken().isPresent()) {
+                    Token child = element.getToken().get();
+                    this.openPretty(child, depth + 1);
+                    stack.push(new Frame(child));
+                } else {
+                    this.indent(depth + 1);
+                    if (element.hasSpan()) {
+                        this.out.append(element.getSource(), element.getSourceStart(), element.getSourceEnd());
+                    } else {
+                        this.out.append(element.getString().orElse(null));
+                    }
+                }
+            } else {
+                this.out.append(this.lineSeparator);
+                this.indent(depth);
+                this.out.append(')');
+                stack.pop();
+            }
+        }
+        return this;
+    }
+
+    public Appendable getOut() {
+        return this.out;
+    }
+
+    public static String toString(Token token) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            new TokenWriter(builder).write(token);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+
+    public static String toString(TokenParameters.Element element) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            new TokenWriter(builder).write(element);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+
+    public static String toString(List<TokenParameters.Element> elements) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            new TokenWriter(builder).write(elements);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+
+    public static String toPrettyString(Token token, int indent) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            new TokenWriter(builder).writePretty(token, indent);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+
+    private void open(Token token) throws IOException {
+        this.out.append(Token.TOKEN_PREFIX).append(token.getName()).append('(');
+    }
+
+    private void openPretty(Token token, int depth) throws IOException {
+        this.indent(depth);
+        this.out.append(Token.TOKEN_PREFIX).append(token.getName()).append('(').append(this.lineSeparator);
+    }
+
+    private void writeValue(TokenParameters.Element element) throws IOException {
+        this.out.append('"');
+        if (element.hasSpan()) {
+            this.codec.escape(element.getSource(), element.getSourceStart(), element.getSourceEnd(), this.out);
+        } else {
+            this.codec.escape(element.getString().get(), this.out);
+        }
+        this.out.append('"');
+    }
+
+    private void indent(int depth) throws IOException {
+        int length = depth * TokenWriter.INDENT.length();
+        while (this.indentation.length() < length) {
+            this.indentation.append(TokenWriter.INDENT);
+        }
+        this.out.append(this.indentation, 0, length);
+    }
+
+    private static class Frame {
+        private Token token;
+        private int index;
+
+        public Frame(Token token) {
+            this.token = token;
+            this.index = 0;
+        }
+
+    }
+
+}
@@ -23,9 +23,20 @@
 package com.gmail.socraticphoenix.parse.token;
 
 public class TokenizerException extends Exception {
+    private int index;
 
     public TokenizerException(String message) {
-        super(message);
+        super(message, null, false, false);
+        this.index = -1;
+    }
+
+    public TokenizerException(String message, int index) {
+        super(message + " (at index " + index + ")", null, false, false);
+        this.index = index;
+    }
+
+    public int getIndex() {
+        return this.index;
     }
 
 }
@@ -0,0 +1,245 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 socraticphoenix@gmail.com
+ * Copyright (c) 2016 contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.gmail.socraticphoenix.parse.tokenizer;
+
+import com.gmail.socraticphoenix.parse.parser.PatternResult;
+import com.gmail.socraticphoenix.parse.token.Token;
+import com.gmail.socraticphoenix.parse.token.TokenParameters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a document's {@link Token} tree up to date across edits. On an edit, the deepest token whose span strictly
+ * encloses the change is re-tokenized with the action that produced it; if it fails or no longer ends where the old
+ * token ended (shifted by the edit), its enclosing token is tried instead, up to re-tokenizing the whole document.
+ * Each re-tokenization starts from a fresh context restored to the variable bindings in effect where the old token
+ * started, and only sees the token's new text plus one character, so an action that would now run past its end is
+ * caught. The document is kept in a gap buffer and is only joined into a string when asked for. Later siblings are
+ * reused and shifted lazily: each ancestor records one pending offset for the elements after the edit, which is
+ * applied the next time its parameters are read, so spans are correct when navigated from the root. This assumes
+ * that an action's match depends only on the text within its own span, which holds for actions that do not look ahead
+ * past what they consume. Contexts come from the given supplier, one per tokenization; since tokens are shifted in
+ * place, interning contexts are rejected.
+ */
+public class IncrementalTokenizer {
+    private TokenizerAction action;
+    private String name;
+    private Supplier<TokenizerContext> contexts;
+
+    private TokenizerContext context;
+    private Map<Token, TokenizerAction> origins;
+    private Text text;
+    private String string;
+    private Token token;
+    private Token reparsed;
+    private PatternResult result;
+
+    public IncrementalTokenizer(TokenizerAction action, String name, Supplier<TokenizerContext> contexts) {
+        this.action = action;
+        this.name = name;
+        this.contexts = contexts;
+    }
+
+    public IncrementalTokenizer(TokenizerAction action, String name) {
+        this(action, name, TokenizerContext::new);
+    }
+
+    private TokenizerContext context() {
+        TokenizerContext context = this.contexts.get();
+        if (context.getInterner().isPresent()) {
+            throw new IllegalArgumentException("Incremental tokenization shifts spans in place and cannot use an interning context");
+        }
+        return context.tracking(true);
+    }
+
+    public Token tokenize(String string) {
+        this.context = this.context();
+        this.origins = new WeakHashMap<>();
+        this.text = new Text(string);
+        this.string = string;
+
+        TokenBuffer buffer = new TokenBuffer();
+        buffer.startToken(this.name, 0);
+        this.result = this.action.tokenize(string, 0, this.context, buffer);
+        buffer.endToken(this.result.getEnd());
+        this.token = buffer.materialize(this.origins).get(0).getToken().get();
+        this.reparsed = this.token;
+        return this.token;
+    }
+
+    public Token edit(int offset, int removed, String inserted) {
+        if (this.token == null) {
+            throw new IllegalStateException("Nothing has been tokenized yet");
+        } else if (offset < 0 || removed < 0 || offset + removed > this.text.length()) {
+            throw new IllegalArgumentException("Edit [" + offset + ", " + (offset + removed) + ") is outside of the document");
+        }
+
+        this.text.replace(offset, removed, inserted);
+        this.string = null;
+        if (!this.result.isSuccesful()) {
+            return this.tokenize(this.getString());
+        }
+
+        int delta = inserted.length() - removed;
+        List<Token> path = new ArrayList<>();
+        int[] indices = this.enclosing(offset, offset + removed, path);
+        for (int i = path.size() - 1; i > 0; i--) {
+            Token old = path.get(i);
+            TokenizerAction origin = this.origins.get(old);
+            if (origin == null) {
+                continue;
+            }
+
+            int start = old.getStart();
+            int end = old.getEnd() + delta;
+            String window = this.text.substring(start, Math.min(end + 1, this.text.length()));
+            TokenBuffer buffer = new TokenBuffer();
+            PatternResult result = origin.tokenize(window, 0, this.context(), buffer);
+            if (!result.isSuccesful() || result.getEnd() != end - start) {
+                continue;
+            }
+
+            List<TokenParameters.Element> elements = buffer.materialize(this.origins);
+            if (elements.size() != 1 || !elements.get(0).getToken().isPresent()) {
+                continue;
+            }
+
+            Token replacement = elements.get(0).getToken().get().shift(start);
+            path.get(i - 1).setElement(indices[i - 1], TokenParameters.element(replacement));
+            for (int j = i - 1; j >= 0; j--) {
+                Token ancestor = path.get(j);
+                ancestor.shiftElements(indices[j] + 1, delta);
+                ancestor.setSpan(ancestor.getStart(), ancestor.getEnd() + delta);
+            }
+
+            this.result = PatternResult.succesful(this.result.getEnd() + delta);
+            this.reparsed = replacement;
+            return this.token;
+        }
+
+        return this.tokenize(this.getString());
+    }
+
+    public String getString() {
+        if (this.string == null) {
+            this.string = this.text.substring(0, this.text.length());
+        }
+        return this.string;
+    }
+
+    public Token getToken() {
+        return this.token;
+    }
+
+    public Token getReparsed() {
+        return this.reparsed;
+    }
+
+    public PatternResult getResult() {
+        return this.result;
+    }
+
+    private int[] enclosing(int start, int end, List<Token> path) {
+        int[] indices = new int[16];
+        Token current = this.token;
+        while (current != null) {
+            path.add(current);
+            int index = current.childEnclosing(start, end);
+            if (index < 0) {
+                break;
+            } else if (path.size() == indices.length) {
+                indices = Arrays.copyOf(indices, indices.length * 2);
+            }
+            indices[path.size() - 1] = index;
+            current = current.getElement(index).getToken().get();
+        }
+        return indices;
+    }
+
+    private static class Text {
+        private char[] chars;
+        private int gapStart;
+        private int gapEnd;
+
+        public Text(String string) {
+            this.chars = new char[string.length() + 64];
+            string.getChars(0, string.length(), this.chars, 0);
+            this.gapStart = string.length();
+            this.gapEnd = this.chars.length;
+        }
+
+        public int length() {
+            return this.chars.length - (this.gapEnd - this.gapStart);
+        }
+
+        public void replace(int offset, int removed, String inserted) {
+            this.move(offset);
+            this.gapEnd += removed;
+            if (inserted.length() > this.gapEnd - this.gapStart) {
+                int length = this.length();
+                char[] chars = new char[Math.max(this.chars.length * 2, length + inserted.length() + 64)];
+                int tail = this.chars.length - this.gapEnd;
+                System.arraycopy(this.chars, 0, chars, 0, this.gapStart);
+                System.arraycopy(this.chars, this.gapEnd, chars, chars.length - tail, tail);
+                this.chars = chars;
+                this.gapEnd = chars.length - tail;
+            }
+            inserted.getChars(0, inserted.length(), this.chars, this.gapStart);
+            this.gapStart += inserted.length();
+        }
+
+        public String substring(int start, int end) {
+            int gap = this.gapEnd - this.gapStart;
+            if (end <= this.gapStart) {
+                return new String(this.chars, start, end - start);
+            } else if (start >= this.gapStart) {
+                return new String(this.chars, start + gap, end - start);
+            }
+
+            char[] chars = new char[end - start];
+            System.arraycopy(this.chars, start, chars, 0, this.gapStart - start);
+            System.arraycopy(this.chars, this.gapEnd, chars, this.gapStart - start, end - this.gapStart);
+            return new String(chars);
+        }
+
+        private void move(int offset) {
+            if (offset < this.gapStart) {
+                int count = this.gapStart - offset;
+                System.arraycopy(this.chars, offset, this.chars, this.gapEnd - count, count);
+                this.gapStart -= count;
+                this.gapEnd -= count;
+            } else if (offset > this.gapStart) {
+                int count = offset - this.gapStart;
+                System.arraycopy(this.chars, this.gapEnd, this.chars, this.gapStart, count);
+                this.gapStart += count;
+                this.gapEnd += count;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 socraticphoenix@gmail.com
+ * Copyright (c) 2016 contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.gmail.socraticphoenix.parse.tokenizer;
+
+import com.gmail.socraticphoenix.collect.coupling.Pair;
+import com.gmail.socraticphoenix.parse.ParserData;
+import com.gmail.socraticphoenix.parse.parser.PatternRestrictions;
+import com.gmail.socraticphoenix.parse.parser.PatternResult;
+import com.gmail.socraticphoenix.parse.token.Token;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Tokenizes a separator-delimited list of independent units in parallel. Unit boundaries are found by a pre-scan that
+ * uses a {@link ParserData} to skip separators inside brackets, quotes and delimiters, and each group of units is then
+ * tokenized on a {@link ForkJoinPool} with its own {@link TokenizerContext}, {@link TokenizerContext#fork(
+ * TokenizerContext.Snapshot) forked} from the given context's bindings and settings. The result is the same as that of
+ * {@link #getSequential()}; if any unit does not end exactly at its boundary, the input is tokenized sequentially
+ * instead. Units must therefore not depend on variables set while tokenizing earlier units. Errors recovered from in
+ * units are added to the given context, which is otherwise only used by the sequential fallback and, since an interner
+ * is not thread-safe, to intern the result once it has been assembled.
+ */
+public class ParallelTokenizer {
+    public static final int DEFAULT_THRESHOLD = 16 * 1024;
+
+    private TokenizerAction element;
+    private String separator;
+    private ParserData data;
+    private ForkJoinPool pool;
+    private int threshold;
+
+    public ParallelTokenizer(TokenizerAction element, String separator, ParserData data, ForkJoinPool pool, int threshold) {
+        if (separator.isEmpty()) {
+            throw new IllegalArgumentException("Separator cannot be empty");
+        }
+
+        this.element = element;
+        this.separator = separator;
+        this.data = data;
+        this.pool = pool;
+        this.threshold = Math.max(threshold, 1);
+    }
+
+    public ParallelTokenizer(TokenizerAction element, String separator, ParserData data) {
+        this(element, separator, data, ForkJoinPool.commonPool(), ParallelTokenizer.DEFAULT_THRESHOLD);
+    }
+
+    public TokenizerAction getSequential() {
+        return TokenizerActions.list(this.element, TokenizerActions.literal(PatternRestrictions.literal(this.separator)));
+    }
+
+    public int[] boundaries(String string) {
+        ParserData data = this.data.reset();
+        int[] boundaries = new int[16];
+        int count = 0;
+        int length = string.length();
+        int i = 0;
+        while (i < length) {
+            if (data.shouldConsider() && string.startsWith(this.separator, i)) {
+                if (count == boundaries.length) {
+                    boundaries = Arrays.copyOf(boundaries, count * 2);
+                }
+                boundaries[count++] = i;
+                for (int j = 0; j < this.separator.length(); j++) {
+                    data.consider(this.separator.charAt(j));
+                }
+                i += this.separator.length();
+            } else {
+                data.consider(string.charAt(i));
+                i++;
+            }
+        }
+        return Arrays.copyOf(boundaries, count);
+    }
+
+    public PatternResult tokenize(String string, String name, TokenSink sink) {
+        return this.tokenize(string, name, new TokenizerContext(), sink);
+    }
+
+    public PatternResult tokenize(String string, String name, TokenizerContext context, TokenSink sink) {
+        int[] boundaries = this.boundaries(string);
+        TokenBuffer buffer = null;
+        if (boundaries.length > 0) {
+            buffer = this.pool.invoke(new UnitTask(string, boundaries, 0, boundaries.length + 1, context, context.snapshot()));
+        }
+
+        sink.startToken(name, 0);
+        PatternResult result;
+        if (buffer != null) {
+            buffer.getErrors().forEach(context::addError);
+            buffer.replay(sink);
+            result = PatternResult.succesful(string.length());
+        } else {
+            result = this.getSequential().tokenize(string, 0, context, sink);
+        }
+        sink.endToken(result.getEnd());
+        return result;
+    }
+
+    public Pair<Token, PatternResult> tokenize(String string, String name) {
+        return this.tokenize(string, name, new TokenizerContext());
+    }
+
+    public Pair<Token, PatternResult> tokenize(String string, String name, TokenizerContext context) {
+        TokenBuffer buffer = new TokenBuffer();
+        PatternResult result = this.tokenize(string, name, context, buffer);
+        return Pair.of(buffer.materialize(null, context.getInterner().orElse(null)).get(0).getToken().get(), result);
+    }
+
+    private class UnitTask extends RecursiveTask<TokenBuffer> {
+        private static final long serialVersionUID = 1L;
+
+        private String string;
+        private int[] boundaries;
+        private int from;
+        private int to;
+        private TokenizerContext context;
+        private TokenizerContext.Snapshot snapshot;
+
+        public UnitTask(String string, int[] boundaries, int from, int to, TokenizerContext context, TokenizerContext.Snapshot snapshot) {
+            this.string = string;
+            this.boundaries = boundaries;
+            this.from = from;
+            this.to = to;
+            this.context = context;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        protected TokenBuffer compute() {
+            if (this.to - this.from == 1 || this.unitEnd(this.to - 1) - this.unitStart(this.from) <= ParallelTokenizer.this.threshold) {
+                return this.tokenize();
+            }
+
+            int middle = (this.from + this.to) >>> 1;
+            UnitTask left = new UnitTask(this.string, this.boundaries, this.from, middle, this.context, this.snapshot);
+            UnitTask right = new UnitTask(this.string, this.boundaries, middle, this.to, this.context, this.snapshot);
+            right.fork();
+            TokenBuffer leftBuffer = left.compute();
+            TokenBuffer rightBuffer = right.join();
+            if (leftBuffer == null || rightBuffer == null) {
+                return null;
+            }
+            rightBuffer.replay(leftBuffer);
+            return leftBuffer;
+        }
+
+        private TokenBuffer tokenize() {
+            TokenBuffer buffer = new TokenBuffer();
+            TokenizerContext context = this.context.fork(this.snapshot);
+            for (int unit = this.from; unit < this.to; unit++) {
+                if (unit > 0) {
+                    int boundary = this.boundaries[unit - 1];
+                    buffer.value(this.string, boundary, boundary + ParallelTokenizer.this.separator.length());
+                }
+
+                int start = this.unitStart(unit);
+                PatternResult result = ParallelTokenizer.this.element.tokenize(this.string, start, context, buffer);
+                if (!result.isSuccesful() || result.getEnd() != this.unitEnd(unit)) {
+                    return null;
+                }
+            }
+            return buffer;
+        }
+
+        private int unitStart(int unit) {
+            return unit == 0 ? 0 : this.boundaries[unit - 1] + ParallelTokenizer.this.separator.length();
+        }
+
+        private int unitEnd(int unit) {
+            return unit == this.boundaries.length ? this.string.length() : this.boundaries[unit];
+        }
+
+    }
+
+}
@@ -0,0 +1,349 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 socraticphoenix@gmail.com
+ * Copyright (c) 2016 contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.gmail.socraticphoenix.parse.tokenizer;
+
+import com.gmail.socraticphoenix.parse.token.Token;
+import com.gmail.socraticphoenix.parse.token.TokenParameters;
+import com.gmail.socraticphoenix.parse.token.TokenType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * A compact, reusable representation of token trees. Every token and value is a node, stored as an index into
+ * parallel int arrays holding its kind, name id, first child, next sibling and source span, so a tree costs no objects
+ * per node. Token names are stored as {@link TokenType} ids, and the arena keeps its types reachable so their ids stay
+ * valid. Nodes are accessed through lightweight {@link Node} views, which can be converted to {@link Token}s when
+ * needed. {@link #clear() Clearing} the arena keeps its capacity for the next tokenization.
+ */
+public class TokenArena implements TokenSink {
+    public static final byte TOKEN = 0;
+    public static final byte VALUE = 1;
+
+    private static final int NONE = -1;
+
+    private byte[] kinds;
+    private int[] types; // type ids of tokens, source ids of values
+    private int[] firstChildren;
+    private int[] nextSiblings;
+    private int[] lastChildren;
+    private int[] starts;
+    private int[] ends;
+    private int size;
+
+    private List<String> sourceTable;
+    private Set<TokenType> typeTable;
+
+    private int[] open;
+    private int depth;
+    private int firstRoot;
+    private int lastRoot;
+
+    public TokenArena() {
+        this(64);
+    }
+
+    public TokenArena(int capacity) {
+        capacity = Math.max(capacity, 1);
+        this.kinds = new byte[capacity];
+        this.types = new int[capacity];
+        this.firstChildren = new int[capacity];
+        this.nextSiblings = new int[capacity];
+        this.lastChildren = new int[capacity];
+        this.starts = new int[capacity];
+        this.ends = new int[capacity];
+        this.sourceTable = new ArrayList<>();
+        this.typeTable = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.open = new int[16];
+        this.clear();
+    }
+
+    public void clear() {
+        this.size = 0;
+        this.depth = 0;
+        this.firstRoot = TokenArena.NONE;
+        this.lastRoot = TokenArena.NONE;
+        this.sourceTable.clear();
+        this.typeTable.clear();
+    }
+
+    @Override
+    public void startToken(String name, int start) {
+        TokenType type = TokenType.of(name);
+        this.typeTable.add(type);
+        int node = this.append(TokenArena.TOKEN, type.getId(), start, -1);
+        if (this.depth == this.open.length) {
+            this.open = Arrays.copyOf(this.open, this.depth * 2);
+        }
+        this.open[this.depth++] = node;
+    }
+
+    @Override
+    public void value(String source, int start, int end) {
+        this.append(TokenArena.VALUE, this.sourceId(source), start, end);
+    }
+
+    @Override
+    public void endToken(int end) {
+        this.ends[this.open[--this.depth]] = end;
+    }
+
+    private int append(byte kind, int type, int start, int end) {
+        if (this.size == this.kinds.length) {
+            int capacity = this.kinds.length * 2;
+            this.kinds = Arrays.copyOf(this.kinds, capacity);
+            this.types = Arrays.copyOf(this.types, capacity);
+            this.firstChildren = Arrays.copyOf(this.firstChildren, capacity);
+            this.nextSiblings = Arrays.copyOf(this.nextSiblings, capacity);
+            this.lastChildren = Arrays.copyOf(this.lastChildren, capacity);
+            this.starts = Arrays.copyOf(this.starts, capacity);
+            this.ends = Arrays.copyOf(this.ends, capacity);
+        }
+
+        int node = this.size++;
+        this.kinds[node] = kind;
+        this.types[node] = type;
+        this.firstChildren[node] = TokenArena.NONE;
+        this.nextSiblings[node] = TokenArena.NONE;
+        this.lastChildren[node] = TokenArena.NONE;
+        this.starts[node] = start;
+        this.ends[node] = end;
+
+        if (this.depth == 0) {
+            if (this.lastRoot == TokenArena.NONE) {
+                this.firstRoot = node;
+            } else {
+                this.nextSiblings[this.lastRoot] = node;
+            }
+            this.lastRoot = node;
+        } else {
+            int parent = this.open[this.depth - 1];
+            if (this.lastChildren[parent] == TokenArena.NONE) {
+                this.firstChildren[parent] = node;
+            } else {
+                this.nextSiblings[this.lastChildren[parent]] = node;
+            }
+            this.lastChildren[parent] = node;
+        }
+        return node;
+    }
+
+    private int sourceId(String source) {
+        int last = this.sourceTable.size() - 1;
+        if (last >= 0 && this.sourceTable.get(last) == source) {
+            return last;
+        }
+        for (int i = 0; i < last; i++) {
+            if (this.sourceTable.get(i) == source) {
+                return i;
+            }
+        }
+        this.sourceTable.add(source);
+        return last + 1;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public Node node(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        return new Node(index);
+    }
+
+    public Optional<Node> getRoot() {
+        return this.firstRoot == TokenArena.NONE ? Optional.empty() : Optional.of(new Node(this.firstRoot));
+    }
+
+    public List<Node> getRoots() {
+        return this.siblings(this.firstRoot);
+    }
+
+    public List<TokenParameters.Element> toElements() {
+        List<TokenParameters.Element> elements = new ArrayList<>();
+        for (int node = this.firstRoot; node != TokenArena.NONE; node = this.nextSiblings[node]) {
+            elements.add(new Node(node).toElement());
+        }
+        return elements;
+    }
+
+    private Token token(int node) {
+        return new Token(TokenType.byId(this.types[node])).setSpan(this.starts[node], this.ends[node]);
+    }
+
+    private TokenParameters.Element value(int node) {
+        String source = this.sourceTable.get(this.types[node]);
+        if (this.starts[node] < 0) {
+            return TokenParameters.element(source);
+        }
+        return TokenParameters.element(source, this.starts[node], this.ends[node]);
+    }
+
+    private List<Node> siblings(int first) {
+        List<Node> nodes = new ArrayList<>();
+        for (int node = first; node != TokenArena.NONE; node = this.nextSiblings[node]) {
+            nodes.add(new Node(node));
+        }
+        return nodes;
+    }
+
+    public class Node {
+        private int index;
+
+        private Node(int index) {
+            this.index = index;
+        }
+
+        public int getIndex() {
+            return this.index;
+        }
+
+        public boolean isToken() {
+            return TokenArena.this.kinds[this.index] == TokenArena.TOKEN;
+        }
+
+        public String getName() {
+            return this.isToken() ? this.getType().getName() : null;
+        }
+
+        public TokenType getType() {
+            return this.isToken() ? TokenType.byId(TokenArena.this.types[this.index]) : null;
+        }
+
+        public Optional<String> getString() {
+            if (this.isToken()) {
+                return Optional.empty();
+            }
+            String source = TokenArena.this.sourceTable.get(TokenArena.this.types[this.index]);
+            return Optional.of(source.substring(this.getStart(), this.getEnd()));
+        }
+
+        public int getStart() {
+            return TokenArena.this.starts[this.index];
+        }
+
+        public int getEnd() {
+            return TokenArena.this.ends[this.index];
+        }
+
+        public Optional<Node> getFirstChild() {
+            int child = TokenArena.this.firstChildren[this.index];
+            return child == TokenArena.NONE ? Optional.empty() : Optional.of(new Node(child));
+        }
+
+        public Optional<Node> getNextSibling() {
+            int sibling = TokenArena.this.nextSiblings[this.index];
+            return sibling == TokenArena.NONE ? Optional.empty() : Optional.of(new Node(sibling));
+        }
+
+        public List<Node> getChildren() {
+            return TokenArena.this.siblings(TokenArena.this.firstChildren[this.index]);
+        }
+
+        public Optional<Node> first(String name) {
+            Optional<TokenType> type = TokenType.get(name);
+            return type.isPresent() ? this.first(type.get()) : Optional.empty();
+        }
+
+        public Optional<Node> first(TokenType type) {
+            int id = type.getId();
+            for (int child = TokenArena.this.firstChildren[this.index]; child != TokenArena.NONE; child = TokenArena.this.nextSiblings[child]) {
+                if (TokenArena.this.kinds[child] == TokenArena.TOKEN && TokenArena.this.types[child] == id) {
+                    return Optional.of(new Node(child));
+                }
+            }
+            return Optional.empty();
+        }
+
+        public List<Node> all(String name) {
+            Optional<TokenType> type = TokenType.get(name);
+            return type.isPresent() ? this.all(type.get()) : new ArrayList<>();
+        }
+
+        public List<Node> all(TokenType type) {
+            List<Node> nodes = new ArrayList<>();
+            int id = type.getId();
+            for (int child = TokenArena.this.firstChildren[this.index]; child != TokenArena.NONE; child = TokenArena.this.nextSiblings[child]) {
+                if (TokenArena.this.kinds[child] == TokenArena.TOKEN && TokenArena.this.types[child] == id) {
+                    nodes.add(new Node(child));
+                }
+            }
+            return nodes;
+        }
+
+        public TokenParameters.Element toElement() {
+            return this.isToken() ? TokenParameters.element(this.toToken()) : TokenArena.this.value(this.index);
+        }
+
+        public Token toToken() {
+            if (!this.isToken()) {
+                throw new IllegalStateException("Node " + this.index + " is a value, not a token");
+            }
+
+            Token[] tokens = new Token[16];
+            int[] cursors = new int[16];
+            int depth = 0;
+            Token root = TokenArena.this.token(this.index);
+            tokens[0] = root;
+            cursors[0] = TokenArena.this.firstChildren[this.index];
+            while (depth >= 0) {
+                int child = cursors[depth];
+                if (child == TokenArena.NONE) {
+                    tokens[depth--] = null;
+                } else {
+                    cursors[depth] = TokenArena.this.nextSiblings[child];
+                    if (TokenArena.this.kinds[child] == TokenArena.TOKEN) {
+                        Token token = TokenArena.this.token(child);
+                        tokens[depth].addElement(token);
+                        if (++depth == tokens.length) {
+                            tokens = Arrays.copyOf(tokens, depth * 2);
+                            cursors = Arrays.copyOf(cursors, depth * 2);
+                        }
+                        tokens[depth] = token;
+                        cursors[depth] = TokenArena.this.firstChildren[child];
+                    } else {
+                        tokens[depth].addElement(TokenArena.this.value(child));
+                    }
+                }
+            }
+            return root;
+        }
+
+        @Override
+        public String toString() {
+            return this.toElement().toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,294 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 socraticphoenix@gmail.com
+ * Copyright (c) 2016 contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.gmail.socraticphoenix.parse.tokenizer;
+
+import com.gmail.socraticphoenix.collect.coupling.Pair;
+import com.gmail.socraticphoenix.parse.parser.PatternResult;
+import com.gmail.socraticphoenix.parse.token.Token;
+import com.gmail.socraticphoenix.parse.token.TokenInterner;
+import com.gmail.socraticphoenix.parse.token.TokenParameters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A sink which records the events pushed to it, so that they can be replayed to another sink once the tokenization
+ * which produced them is known to succeed. Actions which may discard part of their output share a single buffer,
+ * taking a {@link #mark()} before trying an alternative and {@link #reset(int) resetting} to it if the alternative
+ * fails, so that a failed alternative costs only a truncation. Elements and Tokens are only created once the
+ * buffer is {@link #materialize() materialized}. Errors recovered from are recorded as events as well, so that
+ * resetting past them also removes them from their context. A memoized result is recorded once and then referenced as
+ * a single slice event by every buffer it is replayed into, so nested memoized actions do not copy each other's events
+ */
+public class TokenBuffer implements TokenSink {
+    private static final byte START = 0;
+    private static final byte VALUE = 1;
+    private static final byte END = 2;
+    private static final byte ERROR = 3;
+    private static final byte SLICE = 4;
+
+    private byte[] kinds;
+    private String[] strings;
+    private TokenizerAction[] origins;
+    private int[] starts;
+    private int[] ends;
+    private PatternResult[] errors;
+    private TokenizerContext[] contexts;
+    private TokenBuffer[] slices;
+    private int size;
+
+    public TokenBuffer() {
+        this(16);
+    }
+
+    public TokenBuffer(int capacity) {
+        capacity = Math.max(capacity, 1);
+        this.kinds = new byte[capacity];
+        this.strings = new String[capacity];
+        this.origins = new TokenizerAction[capacity];
+        this.starts = new int[capacity];
+        this.ends = new int[capacity];
+        this.errors = new PatternResult[capacity];
+        this.contexts = new TokenizerContext[capacity];
+        this.slices = new TokenBuffer[capacity];
+        this.size = 0;
+    }
+
+    private int append(byte kind, String string, int start, int end) {
+        if (this.size == this.kinds.length) {
+            int capacity = this.kinds.length * 2;
+            this.kinds = Arrays.copyOf(this.kinds, capacity);
+            this.strings = Arrays.copyOf(this.strings, capacity);
+            this.origins = Arrays.copyOf(this.origins, capacity);
+            this.starts = Arrays.copyOf(this.starts, capacity);
+            this.ends = Arrays.copyOf(this.ends, capacity);
+            this.errors = Arrays.copyOf(this.errors, capacity);
+            this.contexts = Arrays.copyOf(this.contexts, capacity);
+            this.slices = Arrays.copyOf(this.slices, capacity);
+        }
+        this.kinds[this.size] = kind;
+        this.strings[this.size] = string;
+        this.origins[this.size] = null;
+        this.starts[this.size] = start;
+        this.ends[this.size] = end;
+        return this.size++;
+    }
+
+    @Override
+    public void startToken(String name, int start) {
+        this.append(TokenBuffer.START, name, start, -1);
+    }
+
+    @Override
+    public void startToken(String name, int start, TokenizerAction origin) {
+        int index = this.append(TokenBuffer.START, name, start, -1);
+        this.origins[index] = origin;
+    }
+
+    @Override
+    public void value(String source, int start, int end) {
+        this.append(TokenBuffer.VALUE, source, start, end);
+    }
+
+    @Override
+    public void endToken(int end) {
+        this.append(TokenBuffer.END, null, -1, end);
+    }
+
+    @Override
+    public void error(PatternResult error, TokenizerContext context) {
+        int index = this.append(TokenBuffer.ERROR, null, -1, -1);
+        this.errors[index] = error;
+        this.contexts[index] = context;
+    }
+
+    void slice(TokenBuffer events) {
+        int index = this.append(TokenBuffer.SLICE, null, -1, -1);
+        this.slices[index] = events;
+    }
+
+    void share(TokenSink sink) {
+        if (sink instanceof TokenBuffer) {
+            if (this.size > 0) {
+                ((TokenBuffer) sink).slice(this);
+            }
+        } else {
+            this.replay(sink);
+        }
+    }
+
+    void collapse(int mark, TokenBuffer events) {
+        this.truncate(mark);
+        if (events.size > 0) {
+            this.slice(events);
+        }
+    }
+
+    public void recover(PatternResult error, TokenizerContext context) {
+        context.addError(error);
+        this.error(error, context);
+    }
+
+    public List<PatternResult> getErrors() {
+        List<PatternResult> errors = new ArrayList<>();
+        this.collectErrors(errors);
+        return errors;
+    }
+
+    private void collectErrors(List<PatternResult> errors) {
+        for (int i = 0; i < this.size; i++) {
+            if (this.kinds[i] == TokenBuffer.ERROR) {
+                errors.add(this.errors[i]);
+            } else if (this.kinds[i] == TokenBuffer.SLICE) {
+                this.slices[i].collectErrors(errors);
+            }
+        }
+    }
+
+    public static TokenBuffer of(TokenSink sink) {
+        return sink instanceof TokenBuffer ? (TokenBuffer) sink : new TokenBuffer();
+    }
+
+    public static Pair<List<TokenParameters.Element>, PatternResult> collect(TokenizerAction action, String string, int start, TokenizerContext context) {
+        TokenBuffer buffer = new TokenBuffer();
+        PatternResult result = action.tokenize(string, start, context, buffer);
+        return Pair.of(buffer.materialize(null, context.getInterner().orElse(null)), result);
+    }
+
+    public int mark() {
+        return this.size;
+    }
+
+    public void reset(int mark) {
+        this.forget(mark, this.size);
+        this.truncate(mark);
+    }
+
+    private void truncate(int mark) {
+        Arrays.fill(this.strings, mark, this.size, null);
+        Arrays.fill(this.origins, mark, this.size, null);
+        Arrays.fill(this.errors, mark, this.size, null);
+        Arrays.fill(this.contexts, mark, this.size, null);
+        Arrays.fill(this.slices, mark, this.size, null);
+        this.size = mark;
+    }
+
+    private void forget(int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (this.kinds[i] == TokenBuffer.ERROR) {
+                this.contexts[i].removeError(this.errors[i]);
+            } else if (this.kinds[i] == TokenBuffer.SLICE) {
+                this.slices[i].forget(0, this.slices[i].size);
+            }
+        }
+    }
+
+    public void delete(int from, int to) {
+        this.forget(from, to);
+        int moved = this.size - to;
+        System.arraycopy(this.kinds, to, this.kinds, from, moved);
+        System.arraycopy(this.strings, to, this.strings, from, moved);
+        System.arraycopy(this.origins, to, this.origins, from, moved);
+        System.arraycopy(this.starts, to, this.starts, from, moved);
+        System.arraycopy(this.ends, to, this.ends, from, moved);
+        System.arraycopy(this.errors, to, this.errors, from, moved);
+        System.arraycopy(this.contexts, to, this.contexts, from, moved);
+        System.arraycopy(this.slices, to, this.slices, from, moved);
+        this.truncate(from + moved);
+    }
+
+    public TokenBuffer copy(int from, int to) {
+        TokenBuffer copy = new TokenBuffer(to - from);
+        System.arraycopy(this.kinds, from, copy.kinds, 0, to - from);
+        System.arraycopy(this.strings, from, copy.strings, 0, to - from);
+        System.arraycopy(this.origins, from, copy.origins, 0, to - from);
+        System.arraycopy(this.starts, from, copy.starts, 0, to - from);
+        System.arraycopy(this.ends, from, copy.ends, 0, to - from);
+        System.arraycopy(this.errors, from, copy.errors, 0, to - from);
+        System.arraycopy(this.contexts, from, copy.contexts, 0, to - from);
+        System.arraycopy(this.slices, from, copy.slices, 0, to - from);
+        copy.size = to - from;
+        return copy;
+    }
+
+    public void commit(TokenSink sink) {
+        if (sink != this) {
+            this.replay(sink);
+            this.truncate(0);
+        }
+    }
+
+    public List<TokenParameters.Element> materialize() {
+        return this.materialize(null);
+    }
+
+    public List<TokenParameters.Element> materialize(Map<Token, TokenizerAction> origins) {
+        return this.materialize(origins, null);
+    }
+
+    public List<TokenParameters.Element> materialize(Map<Token, TokenizerAction> origins, TokenInterner interner) {
+        TokenBuilder builder = new TokenBuilder(origins, interner);
+        this.replay(builder);
+        return builder.getElements();
+    }
+
+    public void replay(TokenSink sink) {
+        this.replay(0, this.size, sink);
+    }
+
+    public void replay(int from, int to, TokenSink sink) {
+        for (int i = from; i < to; i++) {
+            switch (this.kinds[i]) {
+                case TokenBuffer.START:
+                    sink.startToken(this.strings[i], this.starts[i], this.origins[i]);
+                    break;
+                case TokenBuffer.VALUE:
+                    sink.value(this.strings[i], this.starts[i], this.ends[i]);
+                    break;
+                case TokenBuffer.END:
+                    sink.endToken(this.ends[i]);
+                    break;
+                case TokenBuffer.ERROR:
+                    sink.error(this.errors[i], this.contexts[i]);
+                    break;
+                default:
+                    this.slices[i].share(sink);
+                    break;
+            }
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public void clear() {
+        this.reset(0);
+    }
+
+}
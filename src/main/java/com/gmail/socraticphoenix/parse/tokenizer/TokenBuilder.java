@@ -0,0 +1,105 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 socraticphoenix@gmail.com
+ * Copyright (c) 2016 contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.gmail.socraticphoenix.parse.tokenizer;
+
+import com.gmail.socraticphoenix.parse.token.Token;
+import com.gmail.socraticphoenix.parse.token.TokenInterner;
+import com.gmail.socraticphoenix.parse.token.TokenParameters;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Materializes token events into {@link Token} trees. Each token's structural hash is computed as it is closed, from
+ * the already cached hashes of its children, so trees come out of tokenization ready to be interned or diffed.
+ */
+public class TokenBuilder implements TokenSink {
+    private List<TokenParameters.Element> elements;
+    private Deque<Token> open;
+    private Map<Token, TokenizerAction> origins;
+    private TokenInterner interner;
+
+    public TokenBuilder(Map<Token, TokenizerAction> origins, TokenInterner interner) {
+        this.elements = new ArrayList<>();
+        this.open = new ArrayDeque<>();
+        this.origins = origins;
+        this.interner = interner;
+    }
+
+    public TokenBuilder(Map<Token, TokenizerAction> origins) {
+        this(origins, null);
+    }
+
+    public TokenBuilder() {
+        this(null);
+    }
+
+    @Override
+    public void startToken(String name, int start) {
+        this.open.push(new Token(name).setSpan(start, -1));
+    }
+
+    @Override
+    public void startToken(String name, int start, TokenizerAction origin) {
+        this.startToken(name, start);
+        if (this.origins != null && origin != null) {
+            this.origins.put(this.open.peek(), origin);
+        }
+    }
+
+    @Override
+    public void value(String source, int start, int end) {
+        this.add(TokenParameters.element(source, start, end));
+    }
+
+    @Override
+    public void endToken(int end) {
+        Token token = this.open.pop();
+        token.setSpan(token.getStart(), end);
+        if (this.interner != null) {
+            token = this.interner.intern(token);
+        }
+        token.structuralHash();
+        this.add(TokenParameters.element(token));
+    }
+
+    @Override
+    public void element(TokenParameters.Element element) {
+        this.add(element);
+    }
+
+    private void add(TokenParameters.Element element) {
+        if (this.open.isEmpty()) {
+            this.elements.add(element);
+        } else {
+            this.open.peek().addElement(element);
+        }
+    }
+
+    public List<TokenParameters.Element> getElements() {
+        return this.elements;
+    }
+
+}
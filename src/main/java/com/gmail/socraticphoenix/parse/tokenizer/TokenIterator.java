@@ -0,0 +1,145 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 socraticphoenix@gmail.com
+ * Copyright (c) 2016 contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.gmail.socraticphoenix.parse.tokenizer;
+
+import com.gmail.socraticphoenix.parse.parser.PatternResult;
+import com.gmail.socraticphoenix.parse.token.Token;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily tokenizes a repetition of records, yielding one {@link Token} per record. Each record is tokenized only when
+ * it is requested, so at most one record's tokens are held at a time. Separators between records are matched but not
+ * emitted. Iteration stops at the first record that fails to tokenize; {@link #getResult()} then reports the failure.
+ * It also stops once a separator and record together consume nothing, so empty matches cannot repeat forever.
+ */
+public class TokenIterator implements Iterator<Token> {
+    private String string;
+    private String name;
+    private TokenizerAction record;
+    private TokenizerAction separator;
+    private TokenizerContext context;
+
+    private TokenBuffer buffer;
+    private int position;
+    private Token next;
+    private boolean started;
+    private boolean done;
+    private PatternResult result;
+
+    public TokenIterator(String string, String name, TokenizerAction record, TokenizerAction separator, TokenizerContext context) {
+        this.string = string;
+        this.name = name;
+        this.record = record;
+        this.separator = separator;
+        this.context = context;
+        this.buffer = new TokenBuffer();
+        this.position = 0;
+        this.next = null;
+        this.started = false;
+        this.done = false;
+        this.result = PatternResult.succesful(0);
+    }
+
+    public TokenIterator(String string, String name, TokenizerAction record, TokenizerAction separator) {
+        this(string, name, record, separator, new TokenizerContext());
+    }
+
+    public TokenIterator(String string, String name, TokenizerAction record) {
+        this(string, name, record, null);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (this.next == null && !this.done) {
+            this.advance();
+        }
+        return this.next != null;
+    }
+
+    @Override
+    public Token next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Token token = this.next;
+        this.next = null;
+        return token;
+    }
+
+    public Stream<Token> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    public int getPosition() {
+        return this.position;
+    }
+
+    public PatternResult getResult() {
+        return this.result;
+    }
+
+    public boolean isComplete() {
+        return this.done && this.result.isSuccesful() && this.position == this.string.length();
+    }
+
+    private void advance() {
+        int start = this.position;
+        if (this.started && this.separator != null) {
+            PatternResult separated = this.separator.tokenize(this.string, start, this.context, TokenSink.DISCARD);
+            if (!separated.isSuccesful()) {
+                this.done = true;
+                if (start < this.string.length()) {
+                    this.result = separated;
+                }
+                return;
+            }
+            start = separated.getEnd();
+        } else if (start >= this.string.length()) {
+            this.done = true;
+            return;
+        }
+
+        this.buffer.clear();
+        this.buffer.startToken(this.name, start);
+        PatternResult result = this.record.tokenize(this.string, start, this.context, this.buffer);
+        if (!result.isSuccesful() || (result.getEnd() == this.position && (this.started || this.separator == null))) {
+            this.buffer.clear();
+            this.done = true;
+            this.result = result;
+            return;
+        }
+        this.buffer.endToken(result.getEnd());
+
+        this.started = true;
+        this.result = result;
+        this.position = result.getEnd();
+        this.next = this.buffer.materialize(null, this.context.getInterner().orElse(null)).get(0).getToken().get();
+        this.buffer.clear();
+    }
+
+}
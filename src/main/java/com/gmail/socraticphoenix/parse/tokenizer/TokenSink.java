@@ -0,0 +1,82 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 socraticphoenix@gmail.com
+ * Copyright (c) 2016 contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.gmail.socraticphoenix.parse.tokenizer;
+
+import com.gmail.socraticphoenix.parse.parser.PatternResult;
+import com.gmail.socraticphoenix.parse.token.Token;
+import com.gmail.socraticphoenix.parse.token.TokenParameters;
+
+/**
+ * A receiver of tokenization events. Actions tokenizing into a sink push a {@link #startToken(String, int)} and a
+ * matching {@link #endToken(int)} for every token they produce, and a {@link #value(String, int, int)} for every
+ * string value, in document order. An {@link #error(PatternResult, TokenizerContext)} reports an error which an
+ * action recovered from, and which has already been added to the context. Positions are indices into the tokenized
+ * string, or -1 if unknown. If an action fails, the events it pushed describe only a partial result
+ */
+public interface TokenSink {
+    TokenSink DISCARD = new TokenSink() {
+        @Override
+        public void startToken(String name, int start) {
+
+        }
+
+        @Override
+        public void value(String source, int start, int end) {
+
+        }
+
+        @Override
+        public void endToken(int end) {
+
+        }
+    };
+
+    void startToken(String name, int start);
+
+    default void startToken(String name, int start, TokenizerAction origin) {
+        this.startToken(name, start);
+    }
+
+    void value(String source, int start, int end);
+
+    void endToken(int end);
+
+    default void error(PatternResult error, TokenizerContext context) {
+
+    }
+
+    default void element(TokenParameters.Element element) {
+        if (!element.getToken().isPresent() && element.getSource() != null) {
+            if (element.hasSpan()) {
+                this.value(element.getSource(), element.getSourceStart(), element.getSourceEnd());
+            } else {
+                this.value(element.getSource(), 0, element.getSource().length());
+            }
+        } else if (element.getToken().isPresent()) {
+            Token token = element.getToken().get();
+            this.startToken(token.getName(), token.getStart());
+            token.getParameters().forEach(this::element);
+            this.endToken(token.getEnd());
+        }
+    }
+
+}
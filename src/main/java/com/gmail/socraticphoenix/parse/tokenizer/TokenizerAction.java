@@ -27,16 +27,53 @@ import com.gmail.socraticphoenix.parse.token.Token;
 import com.gmail.socraticphoenix.parse.token.TokenParameters;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface TokenizerAction {
 
     Pair<List<TokenParameters.Element>, PatternResult> tokenize(String string, int start, TokenizerContext context);
 
+    default PatternResult tokenize(String string, int start, TokenizerContext context, TokenSink sink) {
+        Pair<List<TokenParameters.Element>, PatternResult> result = this.tokenize(string, start, context);
+        result.getA().forEach(sink::element);
+        return result.getB();
+    }
+
+    default PatternResult tokenize(String string, String name, TokenSink sink) {
+        return this.tokenize(string, name, new TokenizerContext(), sink);
+    }
+
+    default PatternResult tokenize(String string, String name, TokenizerContext context, TokenSink sink) {
+        sink.startToken(name, 0);
+        PatternResult result = this.tokenize(string, 0, context, sink);
+        sink.endToken(result.getEnd());
+        return result;
+    }
+
+    default TokenIterator iterate(String string, String name) {
+        return new TokenIterator(string, name, this);
+    }
+
+    default TokenIterator iterate(String string, String name, TokenizerAction separator) {
+        return new TokenIterator(string, name, this, separator);
+    }
+
+    default Stream<Token> stream(String string, String name) {
+        return this.iterate(string, name).stream();
+    }
+
+    default Stream<Token> stream(String string, String name, TokenizerAction separator) {
+        return this.iterate(string, name, separator).stream();
+    }
+
     default Pair<Token, PatternResult> tokenize(String string, String name) {
-        Pair<List<TokenParameters.Element>, PatternResult> result = this.tokenize(string, 0, new TokenizerContext());
-        Token token = new Token(name);
-        result.getA().forEach(token::addElement);
-        return Pair.of(token, result.getB());
+        return this.tokenize(string, name, new TokenizerContext());
+    }
+
+    default Pair<Token, PatternResult> tokenize(String string, String name, TokenizerContext context) {
+        TokenBuffer buffer = new TokenBuffer();
+        PatternResult result = this.tokenize(string, name, context, buffer);
+        return Pair.of(buffer.materialize(null, context.getInterner().orElse(null)).get(0).getToken().get(), result);
     }
 
 }
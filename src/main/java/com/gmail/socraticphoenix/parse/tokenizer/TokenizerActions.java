@@ -25,8 +25,11 @@ import com.gmail.socraticphoenix.parse.parser.PatternRestriction;
 import com.gmail.socraticphoenix.parse.tokenizer.action.ConsumeAction;
 import com.gmail.socraticphoenix.parse.tokenizer.action.LazyVariableAction;
 import com.gmail.socraticphoenix.parse.tokenizer.action.LiteralAction;
+import com.gmail.socraticphoenix.parse.tokenizer.action.MemoizedAction;
+import com.gmail.socraticphoenix.parse.tokenizer.action.OperatorAction;
 import com.gmail.socraticphoenix.parse.tokenizer.action.OptionalAction;
 import com.gmail.socraticphoenix.parse.tokenizer.action.OrAction;
+import com.gmail.socraticphoenix.parse.tokenizer.action.RecoverAction;
 import com.gmail.socraticphoenix.parse.tokenizer.action.RepeatingAction;
 import com.gmail.socraticphoenix.parse.tokenizer.action.RepeatingNonGreedyAction;
 import com.gmail.socraticphoenix.parse.tokenizer.action.RepeatingOrNoneAction;
@@ -70,6 +73,22 @@ public interface TokenizerActions {
         return new LazyVariableAction(name);
     }
 
+    static TokenizerAction memoized(TokenizerAction action) {
+        return new MemoizedAction(action);
+    }
+
+    static OperatorAction operators(TokenizerAction operand) {
+        return new OperatorAction(operand);
+    }
+
+    static TokenizerAction recover(TokenizerAction action, PatternRestriction sync) {
+        return new RecoverAction(action, sync, false);
+    }
+
+    static TokenizerAction recover(TokenizerAction action, PatternRestriction sync, boolean consumeSync) {
+        return new RecoverAction(action, sync, consumeSync);
+    }
+
     static TokenizerAction set(String name, TokenizerAction action) {
         return new SetAction(name, action);
     }
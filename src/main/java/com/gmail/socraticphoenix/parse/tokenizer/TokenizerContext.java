@@ -21,23 +21,197 @@
  */
 package com.gmail.socraticphoenix.parse.tokenizer;
 
+import com.gmail.socraticphoenix.collect.coupling.Pair;
 import com.gmail.socraticphoenix.parse.parser.PatternContext;
+import com.gmail.socraticphoenix.parse.parser.PatternResult;
+import com.gmail.socraticphoenix.parse.token.TokenInterner;
+import com.gmail.socraticphoenix.parse.token.TokenParameters;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class TokenizerContext {
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
     private PatternContext patternContext;
     private Map<String, TokenizerAction> variables;
+    private boolean shared;
+    private long version;
+
+    private boolean tracking;
+    private boolean recovering;
+    private List<PatternResult> errors;
+
+    private TokenInterner interner;
+
+    private Map<MemoKey, Memo> memo;
+    private int memoCapacity;
+    private String memoInput;
+    private long memoHits;
+    private long memoMisses;
 
     public TokenizerContext() {
         this.patternContext = new PatternContext();
         this.variables = new HashMap<>();
+        this.recovering = false;
+        this.errors = new ArrayList<>();
+    }
+
+    public TokenizerContext tracking(boolean tracking) {
+        this.tracking = tracking;
+        return this;
+    }
+
+    public boolean isTracking() {
+        return this.tracking;
+    }
+
+    public TokenizerAction origin(TokenizerAction action) {
+        return this.tracking ? new Restoring(action, this.snapshot()) : action;
+    }
+
+    public Snapshot snapshot() {
+        this.shared = true;
+        return new Snapshot(this.variables, this.version, this.patternContext.copy());
+    }
+
+    public TokenizerContext fork(Snapshot snapshot) {
+        TokenizerContext fork = new TokenizerContext().tracking(this.tracking).recovering(this.recovering);
+        fork.restore(snapshot);
+        if (this.memo != null) {
+            fork.memoize(this.memoCapacity);
+        }
+        return fork;
+    }
+
+    public void restore(Snapshot snapshot) {
+        this.variables = snapshot.variables;
+        this.shared = true;
+        this.version = snapshot.version;
+        this.patternContext.restore(snapshot.patternContext);
+    }
+
+    private boolean isCurrent(Snapshot snapshot) {
+        return this.version == snapshot.version && this.patternContext.getVersion() == snapshot.patternContext.getVersion();
+    }
+
+    public TokenizerContext recovering(boolean recovering) {
+        this.recovering = recovering;
+        return this;
+    }
+
+    public boolean isRecovering() {
+        return this.recovering;
+    }
+
+    public void addError(PatternResult error) {
+        this.errors.add(error);
+    }
+
+    void removeError(PatternResult error) {
+        for (int i = this.errors.size() - 1; i >= 0; i--) {
+            if (this.errors.get(i) == error) {
+                this.errors.remove(i);
+                return;
+            }
+        }
+    }
+
+    public List<PatternResult> getErrors() {
+        return this.errors;
+    }
+
+    public TokenizerContext interning(TokenInterner interner) {
+        this.interner = interner;
+        return this;
+    }
+
+    public Optional<TokenInterner> getInterner() {
+        return Optional.ofNullable(this.interner);
+    }
+
+    public TokenizerContext memoize(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Memo capacity must be positive");
+        }
+        this.memo = new LinkedHashMap<MemoKey, Memo>(Math.min(capacity, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MemoKey, Memo> eldest) {
+                return this.size() > capacity;
+            }
+        };
+        this.memoCapacity = capacity;
+        this.memoInput = null;
+        return this;
+    }
+
+    public boolean isMemoizing() {
+        return this.memo != null;
+    }
+
+    public void clearMemo() {
+        if (this.memo != null) {
+            this.memo.clear();
+        }
+        this.memoInput = null;
+    }
+
+    public long getMemoHits() {
+        return this.memoHits;
+    }
+
+    public long getMemoMisses() {
+        return this.memoMisses;
+    }
+
+    public PatternResult tokenizeMemoized(TokenizerAction action, String string, int start, TokenSink sink) {
+        if (this.memo == null) {
+            return action.tokenize(string, start, this, sink);
+        }
+
+        if (string != this.memoInput) {
+            this.memo.clear();
+            this.memoInput = string;
+        }
+
+        MemoKey key = new MemoKey(action, start, this.version, this.patternContext.getVersion());
+        Memo entry = this.memo.get(key);
+        if (entry != null) {
+            this.memoHits++;
+            entry.events.share(sink);
+            entry.events.getErrors().forEach(this::addError);
+            if (!this.isCurrent(entry.bindings)) {
+                this.restore(entry.bindings);
+            }
+            return entry.result;
+        }
+
+        this.memoMisses++;
+        TokenBuffer buffer = TokenBuffer.of(sink);
+        int mark = buffer.mark();
+        PatternResult result = action.tokenize(string, start, this, buffer);
+        if (this.memo != null && string == this.memoInput) {
+            entry = new Memo(result, buffer.copy(mark, buffer.size()), this.snapshot());
+            this.memo.put(key, entry);
+            buffer.collapse(mark, entry.events);
+        }
+        buffer.commit(sink);
+        return result;
     }
 
     public void setVariable(String name, TokenizerAction restriction) {
-        this.variables.put(name, restriction);
+        if (this.shared) {
+            this.variables = new HashMap<>(this.variables);
+            this.shared = false;
+        }
+        if (this.variables.put(name, restriction) != restriction) {
+            this.version = TokenizerContext.VERSIONS.incrementAndGet();
+        }
     }
 
     public Optional<TokenizerAction> getVariable(String name) {
@@ -48,4 +222,89 @@ public class TokenizerContext {
         return this.patternContext;
     }
 
+    /**
+     * The variable bindings of a context at some point of a tokenization, as captured by {@link #snapshot()}.
+     */
+    public static class Snapshot {
+        private final Map<String, TokenizerAction> variables;
+        private final long version;
+        private final PatternContext patternContext;
+
+        private Snapshot(Map<String, TokenizerAction> variables, long version, PatternContext patternContext) {
+            this.variables = variables;
+            this.version = version;
+            this.patternContext = patternContext;
+        }
+
+    }
+
+    private static class Restoring implements TokenizerAction {
+        private TokenizerAction action;
+        private Snapshot snapshot;
+
+        public Restoring(TokenizerAction action, Snapshot snapshot) {
+            this.action = action;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public Pair<List<TokenParameters.Element>, PatternResult> tokenize(String string, int start, TokenizerContext context) {
+            return TokenBuffer.collect(this, string, start, context);
+        }
+
+        @Override
+        public PatternResult tokenize(String string, int start, TokenizerContext context, TokenSink sink) {
+            context.restore(this.snapshot);
+            return this.action.tokenize(string, start, context, sink);
+        }
+
+    }
+
+    private static class MemoKey {
+        private TokenizerAction action;
+        private int start;
+        private long variables;
+        private long patternVariables;
+
+        public MemoKey(TokenizerAction action, int start, long variables, long patternVariables) {
+            this.action = action;
+            this.start = start;
+            this.variables = variables;
+            this.patternVariables = patternVariables;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            } else if (!(o instanceof MemoKey)) {
+                return false;
+            }
+
+            MemoKey other = (MemoKey) o;
+            return this.action == other.action && this.start == other.start && this.variables == other.variables && this.patternVariables == other.patternVariables;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = System.identityHashCode(this.action) * 31 + this.start;
+            hash = hash * 31 + Long.hashCode(this.variables);
+            return hash * 31 + Long.hashCode(this.patternVariables);
+        }
+
+    }
+
+    private static class Memo {
+        private PatternResult result;
+        private TokenBuffer events;
+        private Snapshot bindings;
+
+        public Memo(PatternResult result, TokenBuffer events, Snapshot bindings) {
+            this.result = result;
+            this.events = events;
+            this.bindings = bindings;
+        }
+
+    }
+
 }
@@ -21,10 +21,11 @@
  */
 package com.gmail.socraticphoenix.parse.tokenizer.action;
 
-import com.gmail.socraticphoenix.collect.Items;
 import com.gmail.socraticphoenix.collect.coupling.Pair;
 import com.gmail.socraticphoenix.parse.parser.PatternResult;
 import com.gmail.socraticphoenix.parse.token.TokenParameters;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenBuffer;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenSink;
 import com.gmail.socraticphoenix.parse.tokenizer.TokenizerAction;
 import com.gmail.socraticphoenix.parse.tokenizer.TokenizerContext;
 
@@ -39,7 +40,16 @@ public class ConsumeAction implements TokenizerAction {
 
     @Override
     public Pair<List<TokenParameters.Element>, PatternResult> tokenize(String string, int start, TokenizerContext context) {
-        Pair<List<TokenParameters.Element>, PatternResult> result = this.action.tokenize(string, start, context);
-        return Pair.of(Items.buildList(), result.getB());
+        return TokenBuffer.collect(this, string, start, context);
     }
+
+    @Override
+    public PatternResult tokenize(String string, int start, TokenizerContext context, TokenSink sink) {
+        TokenBuffer buffer = TokenBuffer.of(sink);
+        int mark = buffer.mark();
+        PatternResult result = this.action.tokenize(string, start, context, buffer);
+        buffer.reset(mark);
+        return result;
+    }
+
 }
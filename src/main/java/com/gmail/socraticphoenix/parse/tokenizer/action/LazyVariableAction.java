@@ -21,10 +21,11 @@
  */
 package com.gmail.socraticphoenix.parse.tokenizer.action;
 
-import com.gmail.socraticphoenix.collect.Items;
 import com.gmail.socraticphoenix.collect.coupling.Pair;
 import com.gmail.socraticphoenix.parse.parser.PatternResult;
 import com.gmail.socraticphoenix.parse.token.TokenParameters;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenBuffer;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenSink;
 import com.gmail.socraticphoenix.parse.tokenizer.TokenizerAction;
 import com.gmail.socraticphoenix.parse.tokenizer.TokenizerContext;
 
@@ -40,11 +41,16 @@ public class LazyVariableAction implements TokenizerAction {
 
     @Override
     public Pair<List<TokenParameters.Element>, PatternResult> tokenize(String string, int start, TokenizerContext context) {
+        return TokenBuffer.collect(this, string, start, context);
+    }
+
+    @Override
+    public PatternResult tokenize(String string, int start, TokenizerContext context, TokenSink sink) {
         Optional<TokenizerAction> action = context.getVariable(this.var);
         if (action.isPresent()) {
-            return action.get().tokenize(string, start, context);
+            return context.tokenizeMemoized(action.get(), string, start, sink);
         } else {
-            return Pair.of(Items.buildList(), PatternResult.parseError("Uninitialized tokenizer reference in lazy action variable: " + this.var, start));
+            return PatternResult.parseError("Uninitialized tokenizer reference in lazy action variable: " + this.var, start);
         }
     }
 
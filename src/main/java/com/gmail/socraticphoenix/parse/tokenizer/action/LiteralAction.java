@@ -21,11 +21,12 @@
  */
 package com.gmail.socraticphoenix.parse.tokenizer.action;
 
-import com.gmail.socraticphoenix.collect.Items;
 import com.gmail.socraticphoenix.collect.coupling.Pair;
 import com.gmail.socraticphoenix.parse.parser.PatternRestriction;
 import com.gmail.socraticphoenix.parse.parser.PatternResult;
 import com.gmail.socraticphoenix.parse.token.TokenParameters;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenBuffer;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenSink;
 import com.gmail.socraticphoenix.parse.tokenizer.TokenizerAction;
 import com.gmail.socraticphoenix.parse.tokenizer.TokenizerContext;
 
@@ -40,9 +41,14 @@ public class LiteralAction implements TokenizerAction {
 
     @Override
     public Pair<List<TokenParameters.Element>, PatternResult> tokenize(String string, int start, TokenizerContext context) {
+        return TokenBuffer.collect(this, string, start, context);
+    }
+
+    @Override
+    public PatternResult tokenize(String string, int start, TokenizerContext context, TokenSink sink) {
         PatternResult result = this.restriction.match(string, start, context.getPatternContext());
-        String value = string.substring(start, result.getEnd());
-        return Pair.of(Items.buildList(TokenParameters.element(value)), result);
+        sink.value(string, start, result.getEnd());
+        return result;
     }
 
 }
@@ -0,0 +1,301 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 socraticphoenix@gmail.com
+ * Copyright (c) 2016 contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.gmail.socraticphoenix.parse.tokenizer.action;
+
+import com.gmail.socraticphoenix.collect.coupling.Pair;
+import com.gmail.socraticphoenix.parse.parser.PatternContext;
+import com.gmail.socraticphoenix.parse.parser.PatternRestriction;
+import com.gmail.socraticphoenix.parse.parser.PatternResult;
+import com.gmail.socraticphoenix.parse.token.TokenParameters;
+import com.gmail.socraticphoenix.parse.token.TokenType;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenBuffer;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenSink;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenizerAction;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenizerContext;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Parses operator expressions by precedence climbing over a single operator table, rather than one nested action per
+ * precedence level. Each operator application produces a token named after the operator, holding its operands and the
+ * matched operator text in source order. Where several operators match at the same position, the longest match wins.
+ * Parsing and emission both run on explicit stacks, so long operator chains of either associativity cannot overflow
+ * the call stack.
+ */
+public class OperatorAction implements TokenizerAction {
+    private TokenizerAction operand;
+    private List<Operator> prefix;
+    private List<Operator> infix;
+    private List<Operator> postfix;
+
+    public OperatorAction(TokenizerAction operand) {
+        this.operand = operand;
+        this.prefix = new ArrayList<>();
+        this.infix = new ArrayList<>();
+        this.postfix = new ArrayList<>();
+    }
+
+    public OperatorAction infix(String name, PatternRestriction symbol, int precedence) {
+        this.infix.add(new Operator(name, symbol, precedence, false));
+        return this;
+    }
+
+    public OperatorAction infixRight(String name, PatternRestriction symbol, int precedence) {
+        this.infix.add(new Operator(name, symbol, precedence, true));
+        return this;
+    }
+
+    public OperatorAction prefix(String name, PatternRestriction symbol, int precedence) {
+        this.prefix.add(new Operator(name, symbol, precedence, true));
+        return this;
+    }
+
+    public OperatorAction postfix(String name, PatternRestriction symbol, int precedence) {
+        this.postfix.add(new Operator(name, symbol, precedence, false));
+        return this;
+    }
+
+    @Override
+    public Pair<List<TokenParameters.Element>, PatternResult> tokenize(String string, int start, TokenizerContext context) {
+        return TokenBuffer.collect(this, string, start, context);
+    }
+
+    @Override
+    public PatternResult tokenize(String string, int start, TokenizerContext context, TokenSink sink) {
+        TokenBuffer operands = new TokenBuffer();
+        List<PatternResult> failed = new ArrayList<>();
+        Node node = this.expression(string, start, 0, context, operands, failed);
+        if (node == null) {
+            return new PatternResult(start, PatternResult.Type.SYNTAX_ERROR, "Expected operand", failed, false);
+        }
+
+        this.emit(node, string, operands, sink);
+        return PatternResult.succesful(node.end);
+    }
+
+    private Node expression(String string, int start, int minPrecedence, TokenizerContext context, TokenBuffer operands, List<PatternResult> failed) {
+        PatternContext patternContext = context.getPatternContext();
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(new Frame(Frame.EXPRESSION, start, minPrecedence));
+        Node result = null;
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            switch (frame.state) {
+                case Frame.EXPRESSION:
+                    frame.state = Frame.OPERAND;
+                    stack.push(new Frame(Frame.UNARY, frame.start, 0));
+                    continue;
+                case Frame.OPERAND:
+                    if (result == null) {
+                        stack.pop();
+                        continue;
+                    }
+                    frame.node = result;
+                    break;
+                case Frame.RIGHT:
+                    if (result == null) {
+                        operands.reset(frame.mark);
+                        stack.pop();
+                        result = frame.node;
+                        continue;
+                    }
+                    frame.node = new Node(frame.match.operator, frame.node.start, result.end, frame.node, frame.match, result);
+                    break;
+                case Frame.UNARY:
+                    Match prefix = this.match(this.prefix, string, frame.start, patternContext);
+                    if (prefix != null) {
+                        frame.match = prefix;
+                        frame.mark = operands.mark();
+                        frame.state = Frame.PREFIXED;
+                        stack.push(new Frame(Frame.EXPRESSION, prefix.end, prefix.operator.precedence));
+                        continue;
+                    }
+                    stack.pop();
+                    result = this.operand(string, frame.start, context, operands, failed);
+                    continue;
+                default:
+                    stack.pop();
+                    if (result != null) {
+                        result = new Node(frame.match.operator, frame.start, result.end, null, frame.match, result);
+                    } else {
+                        operands.reset(frame.mark);
+                        result = this.operand(string, frame.start, context, operands, failed);
+                    }
+                    continue;
+            }
+
+            Node node = frame.node;
+            Match match;
+            while ((match = this.match(this.postfix, string, node.end, patternContext)) != null && match.operator.precedence >= frame.minPrecedence) {
+                node = new Node(match.operator, node.start, match.end, node, match, null);
+            }
+            frame.node = node;
+
+            match = this.match(this.infix, string, node.end, patternContext);
+            if (match == null || match.operator.precedence < frame.minPrecedence) {
+                stack.pop();
+                result = node;
+            } else {
+                frame.match = match;
+                frame.mark = operands.mark();
+                frame.state = Frame.RIGHT;
+                stack.push(new Frame(Frame.EXPRESSION, match.end, match.operator.right ? match.operator.precedence : match.operator.precedence + 1));
+            }
+        }
+        return result;
+    }
+
+    private Node operand(String string, int start, TokenizerContext context, TokenBuffer operands, List<PatternResult> failed) {
+        int mark = operands.mark();
+        PatternResult result = this.operand.tokenize(string, start, context, operands);
+        if (!result.isSuccesful()) {
+            operands.reset(mark);
+            failed.add(result);
+            return null;
+        }
+        return new Node(start, result.getEnd(), mark, operands.size());
+    }
+
+    private Match match(List<Operator> operators, String string, int start, PatternContext context) {
+        Match longest = null;
+        for (Operator operator : operators) {
+            PatternResult result = operator.symbol.match(string, start, context);
+            if (result.isSuccesful() && (longest == null || result.getEnd() > longest.end)) {
+                longest = new Match(operator, start, result.getEnd());
+            }
+        }
+        return longest;
+    }
+
+    private void emit(Node root, String string, TokenBuffer operands, TokenSink sink) {
+        Deque<Node> stack = new ArrayDeque<>();
+        Deque<Node> open = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            if (node == Node.SYMBOL) {
+                Node parent = open.peek();
+                sink.value(string, parent.symbol.start, parent.symbol.end);
+            } else if (node == Node.END) {
+                sink.endToken(open.pop().end);
+            } else if (node.operator == null) {
+                operands.replay(node.from, node.to, sink);
+            } else {
+                sink.startToken(node.operator.name, node.start);
+                open.push(node);
+                stack.push(Node.END);
+                if (node.right != null) {
+                    stack.push(node.right);
+                }
+                stack.push(Node.SYMBOL);
+                if (node.left != null) {
+                    stack.push(node.left);
+                }
+            }
+        }
+    }
+
+    private static class Operator {
+        private String name;
+        private PatternRestriction symbol;
+        private int precedence;
+        private boolean right;
+
+        public Operator(String name, PatternRestriction symbol, int precedence, boolean right) {
+            this.name = TokenType.of(name).getName();
+            this.symbol = symbol;
+            this.precedence = precedence;
+            this.right = right;
+        }
+
+    }
+
+    private static class Match {
+        private Operator operator;
+        private int start;
+        private int end;
+
+        public Match(Operator operator, int start, int end) {
+            this.operator = operator;
+            this.start = start;
+            this.end = end;
+        }
+
+    }
+
+    private static class Frame {
+        private static final int EXPRESSION = 0;
+        private static final int OPERAND = 1;
+        private static final int RIGHT = 2;
+        private static final int UNARY = 3;
+        private static final int PREFIXED = 4;
+
+        private int state;
+        private int start;
+        private int minPrecedence;
+        private Node node;
+        private Match match;
+        private int mark;
+
+        public Frame(int state, int start, int minPrecedence) {
+            this.state = state;
+            this.start = start;
+            this.minPrecedence = minPrecedence;
+        }
+
+    }
+
+    private static class Node {
+        private static final Node SYMBOL = new Node(-1, -1, -1, -1);
+        private static final Node END = new Node(-1, -1, -1, -1);
+
+        private Operator operator;
+        private int start;
+        private int end;
+        private Node left;
+        private Match symbol;
+        private Node right;
+        private int from;
+        private int to;
+
+        public Node(int start, int end, int from, int to) {
+            this.start = start;
+            this.end = end;
+            this.from = from;
+            this.to = to;
+        }
+
+        public Node(Operator operator, int start, int end, Node left, Match symbol, Node right) {
+            this.operator = operator;
+            this.start = start;
+            this.end = end;
+            this.left = left;
+            this.symbol = symbol;
+            this.right = right;
+        }
+
+    }
+
+}
@@ -21,10 +21,11 @@
  */
 package com.gmail.socraticphoenix.parse.tokenizer.action;
 
-import com.gmail.socraticphoenix.collect.Items;
 import com.gmail.socraticphoenix.collect.coupling.Pair;
 import com.gmail.socraticphoenix.parse.parser.PatternResult;
 import com.gmail.socraticphoenix.parse.token.TokenParameters;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenBuffer;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenSink;
 import com.gmail.socraticphoenix.parse.tokenizer.TokenizerAction;
 import com.gmail.socraticphoenix.parse.tokenizer.TokenizerContext;
 
@@ -39,11 +40,20 @@ public class OptionalAction implements TokenizerAction {
 
     @Override
     public Pair<List<TokenParameters.Element>, PatternResult> tokenize(String string, int start, TokenizerContext context) {
-        Pair<List<TokenParameters.Element>, PatternResult> result = this.action.tokenize(string, start, context);
-        if(result.getB().isSuccesful()) {
-            return result;
-        } else {
-            return Pair.of(Items.buildList(), PatternResult.succesful(start));
+        return TokenBuffer.collect(this, string, start, context);
+    }
+
+    @Override
+    public PatternResult tokenize(String string, int start, TokenizerContext context, TokenSink sink) {
+        TokenBuffer buffer = TokenBuffer.of(sink);
+        int mark = buffer.mark();
+        PatternResult result = this.action.tokenize(string, start, context, buffer);
+        if (!result.isSuccesful()) {
+            buffer.reset(mark);
+            result = PatternResult.succesful(start);
         }
+        buffer.commit(sink);
+        return result;
     }
+
 }
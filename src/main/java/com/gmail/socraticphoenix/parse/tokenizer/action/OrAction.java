@@ -22,9 +22,10 @@
 package com.gmail.socraticphoenix.parse.tokenizer.action;
 
 import com.gmail.socraticphoenix.collect.coupling.Pair;
-import com.gmail.socraticphoenix.parse.parser.PatternRestriction;
 import com.gmail.socraticphoenix.parse.parser.PatternResult;
-import com.gmail.socraticphoenix.parse.token.TokenParameters.Element;
+import com.gmail.socraticphoenix.parse.token.TokenParameters;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenBuffer;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenSink;
 import com.gmail.socraticphoenix.parse.tokenizer.TokenizerAction;
 import com.gmail.socraticphoenix.parse.tokenizer.TokenizerContext;
 
@@ -41,23 +42,34 @@ public class OrAction implements TokenizerAction {
     }
 
     @Override
-    public Pair<List<Element>, PatternResult> tokenize(String string, int start, TokenizerContext context) {
+    public Pair<List<TokenParameters.Element>, PatternResult> tokenize(String string, int start, TokenizerContext context) {
+        return TokenBuffer.collect(this, string, start, context);
+    }
+
+    @Override
+    public PatternResult tokenize(String string, int start, TokenizerContext context, TokenSink sink) {
         List<PatternResult> failed = new ArrayList<>();
 
-        Pair<List<Element>, PatternResult> longest = null;
-        for(TokenizerAction action : this.restrictions) {
-            Pair<List<Element>, PatternResult> result = action.tokenize(string, start, context);
-            if (result.getB().isSuccesful() && (longest == null || result.getB().getEnd() > longest.getB().getEnd())) {
+        TokenBuffer buffer = TokenBuffer.of(sink);
+        int mark = buffer.mark();
+        PatternResult longest = null;
+        for (TokenizerAction action : this.restrictions) {
+            int attempt = buffer.mark();
+            PatternResult result = context.tokenizeMemoized(action, string, start, buffer);
+            if (result.isSuccesful() && (longest == null || result.getEnd() > longest.getEnd())) {
+                buffer.delete(mark, attempt);
                 longest = result;
-                if(!this.longest) {
+                if (!this.longest) {
                     break;
                 }
             } else {
-                failed.add(result.getB());
+                buffer.reset(attempt);
+                failed.add(result);
             }
         }
 
-        return longest == null ? Pair.of(new ArrayList<>(), new PatternResult(start, PatternResult.Type.SYNTAX_ERROR, "All tests failed", failed, false)) : longest;
+        buffer.commit(sink);
+        return longest == null ? new PatternResult(start, PatternResult.Type.SYNTAX_ERROR, "All tests failed", failed, false) : longest;
     }
 
 }
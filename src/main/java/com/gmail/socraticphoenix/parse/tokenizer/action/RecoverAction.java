@@ -0,0 +1,87 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 socraticphoenix@gmail.com
+ * Copyright (c) 2016 contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.gmail.socraticphoenix.parse.tokenizer.action;
+
+import com.gmail.socraticphoenix.collect.coupling.Pair;
+import com.gmail.socraticphoenix.parse.parser.PatternRestriction;
+import com.gmail.socraticphoenix.parse.parser.PatternResult;
+import com.gmail.socraticphoenix.parse.token.TokenParameters;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenBuffer;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenSink;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenizerAction;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenizerContext;
+
+import java.util.List;
+
+/**
+ * Recovers from a failure of its action when the {@link TokenizerContext} is {@link TokenizerContext#isRecovering()
+ * recovering}. The input is skipped up to the next position where the sync restriction matches (and past the sync if
+ * it is consumed), and the skipped text is emitted as an {@link #ERROR_TOKEN} token. An error always skips at least one
+ * character, and no recovery is attempted at the end of the input, so repetitions of recovering actions terminate.
+ */
+public class RecoverAction implements TokenizerAction {
+    public static final String ERROR_TOKEN = "error";
+
+    private TokenizerAction action;
+    private PatternRestriction sync;
+    private boolean consumeSync;
+
+    public RecoverAction(TokenizerAction action, PatternRestriction sync, boolean consumeSync) {
+        this.action = action;
+        this.sync = sync;
+        this.consumeSync = consumeSync;
+    }
+
+    @Override
+    public Pair<List<TokenParameters.Element>, PatternResult> tokenize(String string, int start, TokenizerContext context) {
+        return TokenBuffer.collect(this, string, start, context);
+    }
+
+    @Override
+    public PatternResult tokenize(String string, int start, TokenizerContext context, TokenSink sink) {
+        TokenBuffer buffer = TokenBuffer.of(sink);
+        int mark = buffer.mark();
+        PatternResult result = this.action.tokenize(string, start, context, buffer);
+        if (result.isSuccesful() || !context.isRecovering() || start >= string.length()) {
+            buffer.commit(sink);
+            return result;
+        }
+
+        buffer.reset(mark);
+        int end = string.length();
+        for (int i = start; i < string.length(); i++) {
+            PatternResult sync = this.sync.match(string, i, context.getPatternContext());
+            if (sync.isSuccesful() && (this.consumeSync ? sync.getEnd() > start : i > start)) {
+                end = this.consumeSync ? sync.getEnd() : i;
+                break;
+            }
+        }
+
+        buffer.recover(result, context);
+        buffer.startToken(RecoverAction.ERROR_TOKEN, start);
+        buffer.value(string, start, end);
+        buffer.endToken(end);
+        buffer.commit(sink);
+        return PatternResult.succesful(end);
+    }
+
+}
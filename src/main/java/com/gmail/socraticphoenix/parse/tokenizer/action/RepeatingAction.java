@@ -24,10 +24,11 @@ package com.gmail.socraticphoenix.parse.tokenizer.action;
 import com.gmail.socraticphoenix.collect.coupling.Pair;
 import com.gmail.socraticphoenix.parse.parser.PatternResult;
 import com.gmail.socraticphoenix.parse.token.TokenParameters;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenBuffer;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenSink;
 import com.gmail.socraticphoenix.parse.tokenizer.TokenizerAction;
 import com.gmail.socraticphoenix.parse.tokenizer.TokenizerContext;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class RepeatingAction implements TokenizerAction {
@@ -39,23 +40,33 @@ public class RepeatingAction implements TokenizerAction {
 
     @Override
     public Pair<List<TokenParameters.Element>, PatternResult> tokenize(String string, int start, TokenizerContext context) {
-        List<TokenParameters.Element> elements = new ArrayList<>();
-        Pair<List<TokenParameters.Element>, PatternResult> initial = this.action.tokenize(string, start, context);
-        if (!initial.getB().isSuccesful()) {
-            return Pair.of(elements, initial.getB());
+        return TokenBuffer.collect(this, string, start, context);
+    }
+
+    @Override
+    public PatternResult tokenize(String string, int start, TokenizerContext context, TokenSink sink) {
+        TokenBuffer buffer = TokenBuffer.of(sink);
+        int mark = buffer.mark();
+        PatternResult initial = this.action.tokenize(string, start, context, buffer);
+        if (!initial.isSuccesful()) {
+            buffer.reset(mark);
+            return initial;
         } else {
-            elements.addAll(initial.getA());
+            start = initial.getEnd();
         }
 
         while (true) {
-            Pair<List<TokenParameters.Element>, PatternResult> res = this.action.tokenize(string, start, context);
-            if (res.getB().isSuccesful()) {
-                start = res.getB().getEnd();
-                elements.addAll(res.getA());
+            mark = buffer.mark();
+            PatternResult res = this.action.tokenize(string, start, context, buffer);
+            if (res.isSuccesful()) {
+                start = res.getEnd();
             } else {
+                buffer.reset(mark);
                 break;
             }
         }
-        return Pair.of(elements, PatternResult.succesful(start));
+        buffer.commit(sink);
+        return PatternResult.succesful(start);
     }
-}
\ No newline at end of file
+
+}
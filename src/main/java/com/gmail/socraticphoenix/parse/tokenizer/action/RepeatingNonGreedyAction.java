@@ -25,10 +25,11 @@ import com.gmail.socraticphoenix.collect.coupling.Pair;
 import com.gmail.socraticphoenix.parse.parser.PatternRestriction;
 import com.gmail.socraticphoenix.parse.parser.PatternResult;
 import com.gmail.socraticphoenix.parse.token.TokenParameters;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenBuffer;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenSink;
 import com.gmail.socraticphoenix.parse.tokenizer.TokenizerAction;
 import com.gmail.socraticphoenix.parse.tokenizer.TokenizerContext;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class RepeatingNonGreedyAction implements TokenizerAction {
@@ -42,25 +43,34 @@ public class RepeatingNonGreedyAction implements TokenizerAction {
 
     @Override
     public Pair<List<TokenParameters.Element>, PatternResult> tokenize(String string, int start, TokenizerContext context) {
-        List<TokenParameters.Element> elements = new ArrayList<>();
-        Pair<List<TokenParameters.Element>, PatternResult> initial = this.nonGreedy.tokenize(string, start, context);
-        if (!initial.getB().isSuccesful()) {
-            return Pair.of(elements, initial.getB());
+        return TokenBuffer.collect(this, string, start, context);
+    }
+
+    @Override
+    public PatternResult tokenize(String string, int start, TokenizerContext context, TokenSink sink) {
+        TokenBuffer buffer = TokenBuffer.of(sink);
+        int mark = buffer.mark();
+        PatternResult initial = this.nonGreedy.tokenize(string, start, context, buffer);
+        if (!initial.isSuccesful()) {
+            buffer.reset(mark);
+            return initial;
         } else {
-            elements.addAll(initial.getA());
+            start = initial.getEnd();
         }
 
         while (!(this.next.match(string, start, context.getPatternContext()).isSuccesful())) {
-            Pair<List<TokenParameters.Element>, PatternResult> result = this.nonGreedy.tokenize(string, start, context);
-            start = result.getB().getEnd();
-            if (!result.getB().isSuccesful()) {
-                return Pair.of(elements, result.getB());
-            } else {
-                elements.addAll(result.getA());
+            mark = buffer.mark();
+            PatternResult result = this.nonGreedy.tokenize(string, start, context, buffer);
+            start = result.getEnd();
+            if (!result.isSuccesful()) {
+                buffer.reset(mark);
+                buffer.commit(sink);
+                return result;
             }
         }
 
-        return Pair.of(elements, PatternResult.succesful(start));
+        buffer.commit(sink);
+        return PatternResult.succesful(start);
     }
 
 }
@@ -24,6 +24,8 @@ package com.gmail.socraticphoenix.parse.tokenizer.action;
 import com.gmail.socraticphoenix.collect.coupling.Pair;
 import com.gmail.socraticphoenix.parse.parser.PatternResult;
 import com.gmail.socraticphoenix.parse.token.TokenParameters;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenBuffer;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenSink;
 import com.gmail.socraticphoenix.parse.tokenizer.TokenizerAction;
 import com.gmail.socraticphoenix.parse.tokenizer.TokenizerContext;
 
@@ -39,23 +41,28 @@ public class SequenceAction implements TokenizerAction {
 
     @Override
     public Pair<List<TokenParameters.Element>, PatternResult> tokenize(String string, int start, TokenizerContext context) {
+        return TokenBuffer.collect(this, string, start, context);
+    }
+
+    @Override
+    public PatternResult tokenize(String string, int start, TokenizerContext context, TokenSink sink) {
         List<PatternResult> subResults = new ArrayList<>();
-        List<TokenParameters.Element> elements = new ArrayList<>();
+        TokenBuffer buffer = TokenBuffer.of(sink);
         int i = 0;
         for (TokenizerAction action : this.sequence) {
             i++;
-            Pair<List<TokenParameters.Element>, PatternResult> result = action.tokenize(string, start, context);
-            PatternResult patternResult = result.getB();
-            if (patternResult.isSuccesful()) {
-                subResults.add(patternResult);
-                start = patternResult.getEnd();
-                elements.addAll(result.getA());
+            int mark = buffer.mark();
+            PatternResult result = action.tokenize(string, start, context, buffer);
+            subResults.add(result);
+            if (result.isSuccesful()) {
+                start = result.getEnd();
             } else {
-                subResults.add(patternResult);
+                buffer.reset(mark);
                 break;
             }
         }
-        return Pair.of(elements, PatternResult.composed("Failed sequence on pattern #" + i, start, subResults));
+        buffer.commit(sink);
+        return PatternResult.composed("Failed sequence on pattern #" + i, start, subResults);
     }
 
 }
@@ -21,11 +21,12 @@
  */
 package com.gmail.socraticphoenix.parse.tokenizer.action;
 
-import com.gmail.socraticphoenix.collect.Items;
 import com.gmail.socraticphoenix.collect.coupling.Pair;
 import com.gmail.socraticphoenix.parse.parser.PatternResult;
-import com.gmail.socraticphoenix.parse.token.Token;
 import com.gmail.socraticphoenix.parse.token.TokenParameters;
+import com.gmail.socraticphoenix.parse.token.TokenType;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenBuffer;
+import com.gmail.socraticphoenix.parse.tokenizer.TokenSink;
 import com.gmail.socraticphoenix.parse.tokenizer.TokenizerAction;
 import com.gmail.socraticphoenix.parse.tokenizer.TokenizerContext;
 
@@ -33,20 +34,24 @@ import java.util.List;
 
 public class WrapAction implements TokenizerAction {
     private TokenizerAction action;
-    private String name;
+    private TokenType type;
 
     public WrapAction(String name, TokenizerAction action) {
         this.action = action;
-        this.name = name;
+        this.type = TokenType.of(name);
     }
 
     @Override
     public Pair<List<TokenParameters.Element>, PatternResult> tokenize(String string, int start, TokenizerContext context) {
-        Pair<List<TokenParameters.Element>, PatternResult> result = this.action.tokenize(string, start, context);
-        PatternResult patternResult = result.getB();
-        Token wrapped = new Token(this.name);
-        result.getA().forEach(wrapped::addElement);
-        return Pair.of(Items.buildList(TokenParameters.element(wrapped)), patternResult);
+        return TokenBuffer.collect(this, string, start, context);
+    }
+
+    @Override
+    public PatternResult tokenize(String string, int start, TokenizerContext context, TokenSink sink) {
+        sink.startToken(this.type.getName(), start, context.origin(this));
+        PatternResult result = this.action.tokenize(string, start, context, sink);
+        sink.endToken(result.getEnd());
+        return result;
     }
 
 }
@@ -0,0 +1,513 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 socraticphoenix@gmail.com
+ * Copyright (c) 2016 contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.gmail.socraticphoenix.parse.parser.expression.processor;
+
+import com.gmail.socraticphoenix.collect.Items;
+import com.gmail.socraticphoenix.parse.Strings;
+import com.gmail.socraticphoenix.parse.parser.expression.ParserExpressionMethod;
+import com.gmail.socraticphoenix.parse.parser.expression.ParserExpressionReader;
+import com.gmail.socraticphoenix.parse.parser.expression.ParserExpressionRegistry;
+import com.gmail.socraticphoenix.parse.parser.expression.methods.AndParserMethod;
+import com.gmail.socraticphoenix.parse.parser.expression.methods.CompletedParserMethod;
+import com.gmail.socraticphoenix.parse.parser.expression.methods.ListParserMethod;
+import com.gmail.socraticphoenix.parse.parser.expression.methods.LiteralParserMethod;
+import com.gmail.socraticphoenix.parse.parser.expression.methods.OptionalParserMethod;
+import com.gmail.socraticphoenix.parse.parser.expression.methods.OrParserMethod;
+import com.gmail.socraticphoenix.parse.parser.expression.methods.RegexParserMethod;
+import com.gmail.socraticphoenix.parse.parser.expression.methods.RepeatingOrNoneParserMethod;
+import com.gmail.socraticphoenix.parse.parser.expression.methods.RepeatingParserMethod;
+import com.gmail.socraticphoenix.parse.parser.expression.methods.SequenceParserMethod;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Translates a parser expression into the source of a specialized
+ * {@link com.gmail.socraticphoenix.parse.parser.PatternRestriction}. Expressions are split into segments exactly as
+ * {@link ParserExpressionReader} splits them, and the built-in literal, regex, sequence, and, or, optional,
+ * repeating, repeatingOrNone, completed and list methods are generated as straight-line code which produces the same
+ * results as the restrictions they stand for. Variables, set, setAndUse and methods which are not built in depend on
+ * the {@link com.gmail.socraticphoenix.parse.parser.PatternContext} or on methods registered at runtime, so those
+ * segments are read once, when the generated class is loaded, and delegated to
+ */
+public class GrammarCompiler {
+    private List<String> warnings;
+
+    private List<Node> nodes;
+    private Map<Node, Integer> ids;
+
+    public GrammarCompiler() {
+        this.warnings = new ArrayList<>();
+        this.nodes = new ArrayList<>();
+        this.ids = new IdentityHashMap<>();
+    }
+
+    public List<String> getWarnings() {
+        return this.warnings;
+    }
+
+    public String compile(String packageName, String className, String expression) {
+        this.warnings.clear();
+        this.nodes.clear();
+        this.ids.clear();
+        Node root = this.parse(expression);
+        this.number(root);
+
+        StringBuilder out = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            out.append("package ").append(packageName).append(";\n\n");
+        }
+        out.append("import com.gmail.socraticphoenix.parse.parser.PatternContext;\n")
+                .append("import com.gmail.socraticphoenix.parse.parser.PatternRestriction;\n")
+                .append("import com.gmail.socraticphoenix.parse.parser.PatternResult;\n")
+                .append("import com.gmail.socraticphoenix.parse.parser.expression.ParserExpressionReader;\n\n")
+                .append("import java.util.ArrayList;\n")
+                .append("import java.util.List;\n")
+                .append("import java.util.regex.Matcher;\n")
+                .append("import java.util.regex.Pattern;\n\n")
+                .append("/**\n * Generated by ").append(GrammarProcessor.class.getName()).append(" from:\n * <pre>")
+                .append(GrammarCompiler.comment(expression)).append("</pre>\n */\n")
+                .append("public final class ").append(className).append(" implements PatternRestriction {\n")
+                .append("    public static final String EXPRESSION = ").append(GrammarCompiler.quote(expression)).append(";\n")
+                .append("    public static final ").append(className).append(" INSTANCE = new ").append(className).append("();\n");
+        for (Node node : this.nodes) {
+            node.field(this.ids.get(node), out);
+        }
+        out.append("\n    private ").append(className).append("() {\n\n    }\n\n")
+                .append("    @Override\n")
+                .append("    public PatternResult match(String string, int start, PatternContext context) {\n")
+                .append("        return ").append(this.call(root)).append(";\n")
+                .append("    }\n");
+        for (Node node : this.nodes) {
+            out.append("\n    private static PatternResult m").append(this.ids.get(node)).append("(String string, int start, PatternContext context) {\n");
+            node.body(this, out);
+            out.append("    }\n");
+        }
+        out.append("\n}\n");
+        return out.toString();
+    }
+
+    private void number(Node root) {
+        List<Node> stack = new ArrayList<>();
+        stack.add(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.remove(stack.size() - 1);
+            if (!this.ids.containsKey(node)) {
+                this.ids.put(node, this.nodes.size());
+                this.nodes.add(node);
+                stack.addAll(node.children());
+            }
+        }
+    }
+
+    private String call(Node node) {
+        return "m" + this.ids.get(node) + "(string, start, context)";
+    }
+
+    private Node parse(String expression) {
+        ParserExpressionReader reader = new ParserExpressionReader(expression);
+        List<Node> segments = new ArrayList<>();
+        while (reader.hasNext()) {
+            segments.add(this.segment(reader.nextSegment()));
+        }
+        return segments.size() == 1 ? segments.get(0) : new SequenceNode(segments);
+    }
+
+    private List<Node> parseAll(List<String> expressions) {
+        List<Node> nodes = new ArrayList<>();
+        for (String expression : expressions) {
+            nodes.add(this.parse(expression));
+        }
+        return nodes;
+    }
+
+    private Node segment(ParserExpressionReader.Segment segment) {
+        if (!segment.isMethod()) {
+            return new LiteralNode(LiteralParserMethod.literal(segment.getArguments()));
+        } else if (!segment.getText().endsWith("}") || GrammarCompiler.depth(segment.getText()) != 0) {
+            throw new IllegalArgumentException("Unclosed '{' in: " + segment.getText());
+        }
+
+        String name = segment.getName().get();
+        List<String> arguments = segment.getArguments();
+        Optional<ParserExpressionMethod> found = ParserExpressionRegistry.getDefault().lookup(name);
+        if (!found.isPresent()) {
+            return new FallbackNode(segment.getText());
+        }
+
+        ParserExpressionMethod method = found.get();
+        if (!method.accepts(arguments)) {
+            this.warnings.add("Method \"" + name + "\" does not accept " + arguments.size() + " argument(s), and is matched as the literal " + segment.getText());
+            return new LiteralNode(LiteralParserMethod.literal(Items.buildList(segment.getText())));
+        } else if (method instanceof LiteralParserMethod) {
+            return new LiteralNode(LiteralParserMethod.literal(arguments));
+        } else if (method instanceof RegexParserMethod) {
+            String regex = Strings.glue(",", arguments.toArray());
+            try {
+                Pattern.compile(regex);
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Invalid regex in " + segment.getText() + ": " + e.getDescription());
+            }
+            return new RegexNode(regex);
+        } else if (method instanceof SequenceParserMethod) {
+            return new SequenceNode(this.parseAll(arguments));
+        } else if (method instanceof AndParserMethod) {
+            return new AndNode(this.parseAll(arguments));
+        } else if (method instanceof OrParserMethod) {
+            return new OrNode(this.parseAll(arguments));
+        } else if (method instanceof OptionalParserMethod) {
+            return new OptionalNode(this.parse(arguments.get(0)));
+        } else if (method instanceof RepeatingParserMethod) {
+            return new RepeatingNode(this.parse(arguments.get(0)), false);
+        } else if (method instanceof RepeatingOrNoneParserMethod) {
+            return new RepeatingNode(this.parse(arguments.get(0)), true);
+        } else if (method instanceof CompletedParserMethod) {
+            return new CompletedNode(this.parse(arguments.get(0)));
+        } else if (method instanceof ListParserMethod) {
+            Node element = this.parse(arguments.get(0));
+            Node separator = this.parse(arguments.get(1));
+            List<Node> repeated = new ArrayList<>();
+            repeated.add(separator);
+            repeated.add(element);
+            List<Node> list = new ArrayList<>();
+            list.add(element);
+            list.add(new RepeatingNode(new SequenceNode(repeated), true));
+            return new SequenceNode(list);
+        }
+        return new FallbackNode(segment.getText());
+    }
+
+    private static int depth(String text) {
+        int depth = 0;
+        boolean escaped = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (escaped) {
+                escaped = false;
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+            }
+        }
+        return depth;
+    }
+
+    private static String quote(String string) {
+        StringBuilder builder = new StringBuilder("\"");
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7E) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+                    break;
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    private static String comment(String string) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c == '&' || c == '<' || c == '>' || c == '@' || c == '*' || c == '/' || c == '\\' || c < 0x20 || c > 0x7E) {
+                builder.append("&#").append((int) c).append(';');
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    private abstract static class Node {
+
+        public List<Node> children() {
+            return Items.buildList();
+        }
+
+        public void field(int id, StringBuilder out) {
+
+        }
+
+        public abstract void body(GrammarCompiler compiler, StringBuilder out);
+
+    }
+
+    private static class LiteralNode extends Node {
+        private String literal;
+
+        public LiteralNode(String literal) {
+            this.literal = literal;
+        }
+
+        @Override
+        public void body(GrammarCompiler compiler, StringBuilder out) {
+            out.append("        if (string.startsWith(").append(GrammarCompiler.quote(this.literal)).append(", start)) {\n")
+                    .append("            return PatternResult.succesful(start + ").append(this.literal.length()).append(");\n")
+                    .append("        } else {\n")
+                    .append("            return PatternResult.parseError(").append(GrammarCompiler.quote("Expected: " + Strings.escape(this.literal))).append(", start);\n")
+                    .append("        }\n");
+        }
+
+    }
+
+    private static class RegexNode extends Node {
+        private String regex;
+
+        public RegexNode(String regex) {
+            this.regex = regex;
+        }
+
+        @Override
+        public void field(int id, StringBuilder out) {
+            out.append("    private static final Pattern p").append(id).append(" = Pattern.compile(").append(GrammarCompiler.quote(this.regex)).append(");\n");
+        }
+
+        @Override
+        public void body(GrammarCompiler compiler, StringBuilder out) {
+            out.append("        Matcher matcher = p").append(compiler.ids.get(this)).append(".matcher(string);\n")
+                    .append("        if (matcher.find(start)) {\n")
+                    .append("            return PatternResult.succesful(matcher.end());\n")
+                    .append("        } else {\n")
+                    .append("            return PatternResult.parseError(").append(GrammarCompiler.quote("Expected to match: " + this.regex)).append(", start);\n")
+                    .append("        }\n");
+        }
+
+    }
+
+    private static class FallbackNode extends Node {
+        private String expression;
+
+        public FallbackNode(String expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        public void field(int id, StringBuilder out) {
+            out.append("    private static final PatternRestriction r").append(id).append(" = ParserExpressionReader.read(").append(GrammarCompiler.quote(this.expression)).append(");\n");
+        }
+
+        @Override
+        public void body(GrammarCompiler compiler, StringBuilder out) {
+            out.append("        return r").append(compiler.ids.get(this)).append(".match(string, start, context);\n");
+        }
+
+    }
+
+    private static class SequenceNode extends Node {
+        private List<Node> children;
+
+        public SequenceNode(List<Node> children) {
+            this.children = children;
+        }
+
+        @Override
+        public List<Node> children() {
+            return this.children;
+        }
+
+        @Override
+        public void body(GrammarCompiler compiler, StringBuilder out) {
+            out.append("        List<PatternResult> subResults = new ArrayList<>();\n");
+            if (!this.children.isEmpty()) {
+                out.append("        PatternResult result;\n");
+            }
+            for (int i = 0; i < this.children.size(); i++) {
+                out.append("        result = ").append(compiler.call(this.children.get(i))).append(";\n")
+                        .append("        if (!result.isSuccesful()) {\n")
+                        .append("            subResults.add(result);\n")
+                        .append("            return PatternResult.composed(\"Failed sequence on pattern #").append(i + 1).append("\", start, subResults);\n")
+                        .append("        }\n")
+                        .append("        subResults.add(result.asDebug());\n")
+                        .append("        start = result.getEnd();\n");
+            }
+            out.append("        return PatternResult.composed(\"Failed sequence on pattern #").append(this.children.size()).append("\", start, subResults);\n");
+        }
+
+    }
+
+    private static class AndNode extends Node {
+        private List<Node> children;
+
+        public AndNode(List<Node> children) {
+            this.children = children;
+        }
+
+        @Override
+        public List<Node> children() {
+            return this.children;
+        }
+
+        @Override
+        public void body(GrammarCompiler compiler, StringBuilder out) {
+            out.append("        List<PatternResult> failed = new ArrayList<>();\n")
+                    .append("        PatternResult result = ").append(compiler.call(this.children.get(0))).append(";\n")
+                    .append("        if (!result.isSuccesful()) {\n")
+                    .append("            failed.add(result);\n")
+                    .append("        }\n")
+                    .append("        int endpoint = result.getEnd();\n");
+            for (int i = 1; i < this.children.size(); i++) {
+                out.append("        result = ").append(compiler.call(this.children.get(i))).append(";\n")
+                        .append("        if (!result.isSuccesful()) {\n")
+                        .append("            failed.add(result);\n")
+                        .append("        }\n")
+                        .append("        if (endpoint != result.getEnd()) {\n")
+                        .append("            return new PatternResult(start, PatternResult.Type.SYNTAX_ERROR, \"Tests failed due to mismatched endpoints: \" + endpoint + \" and \" + result.getEnd(), failed, false);\n")
+                        .append("        }\n");
+            }
+            out.append("        if (!failed.isEmpty()) {\n")
+                    .append("            return new PatternResult(start, PatternResult.Type.SYNTAX_ERROR, \"Tests failed\", failed, false);\n")
+                    .append("        }\n")
+                    .append("        return PatternResult.succesful(endpoint);\n");
+        }
+
+    }
+
+    private static class OrNode extends Node {
+        private List<Node> children;
+
+        public OrNode(List<Node> children) {
+            this.children = children;
+        }
+
+        @Override
+        public List<Node> children() {
+            return this.children;
+        }
+
+        @Override
+        public void body(GrammarCompiler compiler, StringBuilder out) {
+            out.append("        List<PatternResult> failed = new ArrayList<>();\n")
+                    .append("        PatternResult result;\n");
+            for (Node child : this.children) {
+                out.append("        result = ").append(compiler.call(child)).append(";\n")
+                        .append("        if (result.isSuccesful()) {\n")
+                        .append("            return result;\n")
+                        .append("        }\n")
+                        .append("        failed.add(result);\n");
+            }
+            out.append("        return new PatternResult(start, PatternResult.Type.SYNTAX_ERROR, \"All tests failed\", failed, false);\n");
+        }
+
+    }
+
+    private static class OptionalNode extends Node {
+        private Node child;
+
+        public OptionalNode(Node child) {
+            this.child = child;
+        }
+
+        @Override
+        public List<Node> children() {
+            return Items.buildList(this.child);
+        }
+
+        @Override
+        public void body(GrammarCompiler compiler, StringBuilder out) {
+            out.append("        PatternResult result = ").append(compiler.call(this.child)).append(";\n")
+                    .append("        return result.isSuccesful() ? result : PatternResult.succesful(start);\n");
+        }
+
+    }
+
+    private static class RepeatingNode extends Node {
+        private Node child;
+        private boolean orNone;
+
+        public RepeatingNode(Node child, boolean orNone) {
+            this.child = child;
+            this.orNone = orNone;
+        }
+
+        @Override
+        public List<Node> children() {
+            return Items.buildList(this.child);
+        }
+
+        @Override
+        public void body(GrammarCompiler compiler, StringBuilder out) {
+            out.append("        PatternResult result = ").append(compiler.call(this.child)).append(";\n");
+            if (!this.orNone) {
+                out.append("        if (!result.isSuccesful()) {\n")
+                        .append("            return result;\n")
+                        .append("        }\n");
+            }
+            out.append("        while (result.isSuccesful()) {\n")
+                    .append("            start = result.getEnd();\n")
+                    .append("            result = ").append(compiler.call(this.child)).append(";\n")
+                    .append("        }\n")
+                    .append("        return PatternResult.succesful(start);\n");
+        }
+
+    }
+
+    private static class CompletedNode extends Node {
+        private Node child;
+
+        public CompletedNode(Node child) {
+            this.child = child;
+        }
+
+        @Override
+        public List<Node> children() {
+            return Items.buildList(this.child);
+        }
+
+        @Override
+        public void body(GrammarCompiler compiler, StringBuilder out) {
+            out.append("        PatternResult result = ").append(compiler.call(this.child)).append(";\n")
+                    .append("        if (result.isSuccesful() && result.getEnd() < string.length()) {\n")
+                    .append("            return PatternResult.parseError(\"Unmatched trailing sequence: \" + string.substring(result.getEnd()), result.getEnd());\n")
+                    .append("        }\n")
+                    .append("        return result;\n");
+        }
+
+    }
+
+}
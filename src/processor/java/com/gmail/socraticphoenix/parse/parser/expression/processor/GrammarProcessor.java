@@ -0,0 +1,98 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 socraticphoenix@gmail.com
+ * Copyright (c) 2016 contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.gmail.socraticphoenix.parse.parser.expression.processor;
+
+import com.gmail.socraticphoenix.parse.parser.expression.Grammar;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+
+/**
+ * Compiles {@link Grammar} expressions into {@link com.gmail.socraticphoenix.parse.parser.PatternRestriction}
+ * classes at build time. The processor is built from the {@code processor} source set into its own jar, with the
+ * {@code processor} classifier, and is registered as a service there, so it only runs when that jar is added to the
+ * annotation processor path, for example through the {@code apt} configuration of the {@code net.ltgt.apt} Gradle
+ * plugin
+ */
+@SupportedAnnotationTypes("com.gmail.socraticphoenix.parse.parser.expression.Grammar")
+public class GrammarProcessor extends AbstractProcessor {
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(Grammar.class)) {
+            Grammar grammar = element.getAnnotation(Grammar.class);
+            String packageName = this.processingEnv.getElementUtils().getPackageOf(element).getQualifiedName().toString();
+            String className = grammar.name().isEmpty() ? GrammarProcessor.className(element) : grammar.name();
+
+            GrammarCompiler compiler = new GrammarCompiler();
+            String source;
+            try {
+                source = compiler.compile(packageName, className, grammar.value());
+            } catch (IllegalArgumentException e) {
+                this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Invalid grammar: " + e.getMessage(), element);
+                continue;
+            }
+
+            for (String warning : compiler.getWarnings()) {
+                this.processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, warning, element);
+            }
+
+            String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+            try {
+                JavaFileObject file = this.processingEnv.getFiler().createSourceFile(qualifiedName, element);
+                try (Writer writer = file.openWriter()) {
+                    writer.write(source);
+                }
+            } catch (IOException e) {
+                this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write " + qualifiedName + ": " + e.getMessage(), element);
+            }
+        }
+        return true;
+    }
+
+    private static String className(Element field) {
+        StringBuilder name = new StringBuilder(field.getSimpleName());
+        Element enclosing = field.getEnclosingElement();
+        while (enclosing != null && enclosing.getKind() != ElementKind.PACKAGE && !(enclosing instanceof PackageElement)) {
+            name.insert(0, '_').insert(0, enclosing.getSimpleName());
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return name.toString();
+    }
+
+}
@@ -0,0 +1,36 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 socraticphoenix@gmail.com
+ * Copyright (c) 2016 contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.gmail.socraticphoenix.parse.parser.expression.processor;
+
+import com.gmail.socraticphoenix.parse.parser.expression.Grammar;
+
+public class GrammarFixture {
+    @Grammar("{completed:{sequence:{list:{or:{repeating:{regex:[0-9]}},{literal:x\\,y}},\\,},{optional:;}}}")
+    public static final String NUMBERS = "{completed:{sequence:{list:{or:{repeating:{regex:[0-9]}},{literal:x\\,y}},\\,},{optional:;}}}";
+
+    @Grammar(value = "a{and:{rx:b+},{re:b}}{rn:c}{set:v,d}{var:v}é\"q", name = "MixedGrammar")
+    public static final String MIXED = "a{and:{rx:b+},{re:b}}{rn:c}{set:v,d}{var:v}é\"q";
+
+    @Grammar("")
+    public static final String EMPTY = "";
+
+}
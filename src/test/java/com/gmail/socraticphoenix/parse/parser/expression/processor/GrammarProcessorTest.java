@@ -0,0 +1,128 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 socraticphoenix@gmail.com
+ * Copyright (c) 2016 contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.gmail.socraticphoenix.parse.parser.expression.processor;
+
+import com.gmail.socraticphoenix.parse.parser.PatternContext;
+import com.gmail.socraticphoenix.parse.parser.PatternRestriction;
+import com.gmail.socraticphoenix.parse.parser.PatternResult;
+import com.gmail.socraticphoenix.parse.parser.expression.ParserExpressionReader;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Checks the classes generated for {@link GrammarFixture}, which are compiled by the {@link GrammarProcessor} through
+ * the {@code testApt} configuration, against the restrictions read from the same expressions at runtime. Grammars that
+ * should only produce warnings are run through the processor with {@code javax.tools} instead, so that the test build
+ * itself stays free of warnings
+ */
+public class GrammarProcessorTest {
+
+    private static List<String> processorWarnings(String source) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assume.assumeNotNull(compiler);
+
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///Warned.java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        Path generated = Files.createTempDirectory("grammar");
+        try {
+            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+            List<String> options = Arrays.asList("-proc:only", "-s", generated.toString(), "-classpath", System.getProperty("java.class.path"));
+            JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics, options, null, Collections.singletonList(file));
+            task.setProcessors(Collections.singletonList(new GrammarProcessor()));
+            Assert.assertTrue(task.call());
+            return diagnostics.getDiagnostics().stream()
+                    .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.WARNING && diagnostic.getSource() != null)
+                    .map(diagnostic -> diagnostic.getMessage(null))
+                    .collect(Collectors.toList());
+        } finally {
+            try (Stream<Path> paths = Files.walk(generated)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    private static void assertMatchesInterpreted(PatternRestriction compiled, String expression, String... inputs) {
+        PatternRestriction interpreted = ParserExpressionReader.read(expression);
+        for (String input : inputs) {
+            for (int start = 0; start <= input.length(); start++) {
+                PatternResult expected = interpreted.match(input, start, new PatternContext());
+                PatternResult actual = compiled.match(input, start, new PatternContext());
+                String at = expression + " on \"" + input + "\" at " + start;
+                Assert.assertEquals(at, expected.getEnd(), actual.getEnd());
+                Assert.assertEquals(at, expected.getType(), actual.getType());
+                Assert.assertEquals(at, expected.buildMessage(), actual.buildMessage());
+            }
+        }
+    }
+
+    @Test
+    public void generatesNamedAfterField() {
+        Assert.assertEquals(GrammarFixture.NUMBERS, GrammarFixture_NUMBERS.EXPRESSION);
+        GrammarProcessorTest.assertMatchesInterpreted(GrammarFixture_NUMBERS.INSTANCE, GrammarFixture.NUMBERS, "12,x,y,3;", "12,x,y,3", "1,", "", "x,y", "12,,3");
+    }
+
+    @Test
+    public void generatesExplicitlyNamed() {
+        Assert.assertEquals(GrammarFixture.MIXED, MixedGrammar.EXPRESSION);
+        GrammarProcessorTest.assertMatchesInterpreted(MixedGrammar.INSTANCE, GrammarFixture.MIXED, "abbcccddé\"q", "abbcd", "ab", "abbcccdx");
+    }
+
+    @Test
+    public void warnsAboutMethodsMatchedAsLiterals() throws IOException {
+        List<String> warnings = GrammarProcessorTest.processorWarnings("import com.gmail.socraticphoenix.parse.parser.expression.Grammar;\n" +
+                "public class Warned {\n" +
+                "    @Grammar(\"a{optional:a,b}\")\n" +
+                "    public static final String LITERAL = \"a{optional:a,b}\";\n" +
+                "}\n");
+        Assert.assertEquals(Collections.singletonList("Method \"optional\" does not accept 2 argument(s), and is matched as the literal {optional:a,b}"), warnings);
+    }
+
+    @Test
+    public void generatesEmptyExpression() {
+        GrammarProcessorTest.assertMatchesInterpreted(GrammarFixture_EMPTY.INSTANCE, GrammarFixture.EMPTY, "", "x");
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 socraticphoenix@gmail.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * @author Socratic_Phoenix (socraticphoenix@gmail.com)
+ */
+package com.gmail.socraticphoenix.parse.token;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+public class TokenBinaryTest {
+
+    private static void assertRoundTrip(Token token) {
+        Token read = TokenBinary.read(TokenBinary.toBytes(token)).toToken();
+        Assert.assertTrue(read.structurallyEquals(token));
+
+        Deque<Token> stack = new ArrayDeque<>();
+        stack.push(token);
+        stack.push(read);
+        while (!stack.isEmpty()) {
+            Token a = stack.pop();
+            Token b = stack.pop();
+            Assert.assertEquals(b.getStart(), a.getStart());
+            Assert.assertEquals(b.getEnd(), a.getEnd());
+            for (int i = 0; i < b.getParameters().size(); i++) {
+                if (b.getParameters().get(i).getToken().isPresent()) {
+                    stack.push(b.getParameters().get(i).getToken().get());
+                    stack.push(a.getParameters().get(i).getToken().get());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void roundTripsValuesAndNames() throws TokenizerException {
+        TokenBinaryTest.assertRoundTrip(Token.parse("@p(\"a\", @q(\"\", \"b\"), @q(), \"c\")"));
+        TokenBinaryTest.assertRoundTrip(new Token("unicode").addElement("é中😀").addElement(new Token("empty")));
+    }
+
+    @Test
+    public void roundTripsLoneSurrogates() {
+        TokenBinaryTest.assertRoundTrip(new Token("lone\uD800").addElement("a\uD83D").addElement("\uDE00b").addElement("\uDE00\uD83D\uD7A3😀"));
+    }
+
+    @Test
+    public void roundTripsSpans() {
+        Token root = new Token("doc").setSpan(0, 7);
+        root.addElement(new Token("w").setSpan(0, 2).addElement(TokenParameters.element("ab,cd,e", 0, 2)));
+        root.addElement(TokenParameters.element("ab,cd,e", 2, 3));
+        root.addElement(new Token("w").setSpan(3, 5).addElement(TokenParameters.element("ab,cd,e", 3, 5)));
+        root.addElement(new Token("unspanned").addElement("e"));
+        TokenBinaryTest.assertRoundTrip(root);
+    }
+
+    @Test
+    public void roundTripsDeepTrees() {
+        Token root = new Token("n");
+        Token current = root;
+        for (int i = 0; i < 10000; i++) {
+            Token next = new Token("n").setSpan(i, i + 1);
+            current.addElement(String.valueOf(i)).addElement(next);
+            current = next;
+        }
+        TokenBinaryTest.assertRoundTrip(root);
+    }
+
+    @Test
+    public void navigatesWithoutDecoding() throws TokenizerException {
+        TokenBinary.Node node = TokenBinary.read(TokenBinary.toBytes(Token.parse("@p(\"a\", @q(\"b\"), @r(), @q(\"c\"))")));
+        Assert.assertEquals("p", node.getName());
+        Assert.assertEquals(4, node.getChildCount());
+        Assert.assertEquals(2, node.all("q").size());
+        Assert.assertEquals("b", node.first("q").get().getChildren().get(0).getString().get());
+        Assert.assertFalse(node.first("s").isPresent());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsForeignBytes() {
+        TokenBinary.read(new byte[]{1, 2, 3, 4, 5});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownNodeKinds() {
+        byte[] bytes = TokenBinary.toBytes(new Token("p").addElement("a"));
+        bytes[bytes.length - 3] = 7;
+        TokenBinary.read(bytes).getChildren();
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 socraticphoenix@gmail.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * @author Socratic_Phoenix (socraticphoenix@gmail.com)
+ */
+package com.gmail.socraticphoenix.parse.token;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TokenDiffTest {
+
+    private static void assertApplies(String from, String to) throws TokenizerException {
+        Token a = Token.parse(from);
+        Token b = Token.parse(to);
+        TokenDiff diff = TokenDiff.of(a, b);
+        Assert.assertEquals(TokenDiff.of(ImmutableToken.of(a), ImmutableToken.of(b)).toString(), diff.toString());
+        Assert.assertEquals(ImmutableToken.of(b), diff.apply(ImmutableToken.of(a)));
+        Assert.assertTrue(diff.apply(a).structurallyEquals(b));
+    }
+
+    @Test
+    public void equalTreesHaveNoEdits() throws TokenizerException {
+        Token a = Token.parse("@p(\"a\", @q(\"b\"), \"c\")");
+        Token b = Token.parse("@p(\"a\", @q(\"b\"), \"c\")");
+        Assert.assertTrue(TokenDiff.of(a, b).isEmpty());
+    }
+
+    @Test
+    public void insertAtStart() throws TokenizerException {
+        TokenDiffTest.assertApplies("@p(\"b\", \"c\")", "@p(\"a\", \"b\", \"c\")");
+        TokenDiffTest.assertApplies("@p(\"b\", \"c\")", "@p(@q(\"a\"), \"b\", \"c\")");
+    }
+
+    @Test
+    public void insertInMiddle() throws TokenizerException {
+        TokenDiffTest.assertApplies("@p(\"a\", \"c\")", "@p(\"a\", \"b\", \"c\")");
+        TokenDiffTest.assertApplies("@p(\"a\", \"d\")", "@p(\"a\", \"b\", @q(\"c\"), \"d\")");
+    }
+
+    @Test
+    public void insertAtEnd() throws TokenizerException {
+        TokenDiffTest.assertApplies("@p(\"a\", \"b\")", "@p(\"a\", \"b\", \"c\")");
+        TokenDiffTest.assertApplies("@p()", "@p(\"a\", \"b\")");
+    }
+
+    @Test
+    public void removeAtStart() throws TokenizerException {
+        TokenDiffTest.assertApplies("@p(\"a\", \"b\", \"c\")", "@p(\"b\", \"c\")");
+        TokenDiffTest.assertApplies("@p(@q(\"a\"), \"b\", \"c\")", "@p(\"b\", \"c\")");
+    }
+
+    @Test
+    public void removeInMiddle() throws TokenizerException {
+        TokenDiffTest.assertApplies("@p(\"a\", \"b\", \"c\")", "@p(\"a\", \"c\")");
+        TokenDiffTest.assertApplies("@p(\"a\", \"b\", @q(\"c\"), \"d\")", "@p(\"a\", \"d\")");
+    }
+
+    @Test
+    public void removeAtEnd() throws TokenizerException {
+        TokenDiffTest.assertApplies("@p(\"a\", \"b\", \"c\")", "@p(\"a\", \"b\")");
+        TokenDiffTest.assertApplies("@p(\"a\", \"b\")", "@p()");
+    }
+
+    @Test
+    public void replaceAtStart() throws TokenizerException {
+        TokenDiffTest.assertApplies("@p(\"a\", \"b\", \"c\")", "@p(\"x\", \"b\", \"c\")");
+        TokenDiffTest.assertApplies("@p(\"a\", \"b\", \"c\")", "@p(@q(\"a\"), \"b\", \"c\")");
+    }
+
+    @Test
+    public void replaceInMiddle() throws TokenizerException {
+        TokenDiffTest.assertApplies("@p(\"a\", \"b\", \"c\")", "@p(\"a\", \"x\", \"c\")");
+        TokenDiffTest.assertApplies("@p(\"a\", @q(\"b\"), \"c\")", "@p(\"a\", @r(\"b\"), \"c\")");
+    }
+
+    @Test
+    public void replaceAtEnd() throws TokenizerException {
+        TokenDiffTest.assertApplies("@p(\"a\", \"b\", \"c\")", "@p(\"a\", \"b\", \"x\")");
+        TokenDiffTest.assertApplies("@p(\"a\", \"b\", @q(\"c\"))", "@p(\"a\", \"b\", \"c\")");
+    }
+
+    @Test
+    public void nestedEditsUnderParentWithRemovals() throws TokenizerException {
+        TokenDiffTest.assertApplies("@p(\"a\", @q(\"x\", \"y\"), \"b\", @r(\"z\"), \"c\")", "@p(@q(\"x\", \"w\", \"y\"), @r(\"z\", \"v\"))");
+        TokenDiffTest.assertApplies("@p(@q(\"x\", \"y\"), \"a\", \"b\", @r(@s(\"z\"), \"u\"))", "@p(@q(\"y\"), \"b\", @r(@s(\"z\", \"t\")))");
+        TokenDiffTest.assertApplies("@p(\"a\", @q(@r(\"x\"), \"y\"), \"b\")", "@p(@q(\"y\", @r(\"x\", \"n\")), \"c\")");
+    }
+
+    @Test
+    public void seesMutationsAfterHashing() throws TokenizerException {
+        Token a = Token.parse("@p(\"a\", @q(@r(\"x\"), \"y\"), \"b\")");
+        Token b = a.clone();
+        Assert.assertTrue(TokenDiff.of(a, b).isEmpty());
+
+        b.first("q").get().first("r").get().addElement("z");
+        TokenDiff diff = TokenDiff.of(a, b);
+        Assert.assertEquals(1, diff.size());
+        Assert.assertTrue(diff.apply(a).structurallyEquals(b));
+        Assert.assertTrue(TokenDiff.of(a, b).isEmpty());
+    }
+
+    @Test
+    public void replaceRoot() throws TokenizerException {
+        TokenDiffTest.assertApplies("@p(\"a\")", "@q(\"a\")");
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 socraticphoenix@gmail.com
+ * Copyright (c) 2016 contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.gmail.socraticphoenix.parse.tokenizer;
+
+import com.gmail.socraticphoenix.parse.parser.PatternRestrictions;
+import com.gmail.socraticphoenix.parse.token.Token;
+import com.gmail.socraticphoenix.parse.token.TokenParameters;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class IncrementalTokenizerTest {
+    private static final TokenizerAction WORD = TokenizerActions.wrap("w", PatternRestrictions.repeating(PatternRestrictions.oneOf("a", "b", "c")));
+    private static final TokenizerAction ELEMENT = TokenizerActions.setAndUse("el", TokenizerActions.or(IncrementalTokenizerTest.WORD, TokenizerActions.wrap("arr", TokenizerActions.sequence(
+            TokenizerActions.consume(PatternRestrictions.literal("[")),
+            TokenizerActions.list(TokenizerActions.lazy("el"), TokenizerActions.literal(PatternRestrictions.literal(","))),
+            TokenizerActions.consume(PatternRestrictions.literal("]"))))));
+    private static final TokenizerAction DOCUMENT = TokenizerActions.list(IncrementalTokenizerTest.ELEMENT, TokenizerActions.literal(PatternRestrictions.literal(",")));
+
+    private static String spans(Token token) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(token.getName()).append('[').append(token.getStart()).append(',').append(token.getEnd()).append(']');
+        for (TokenParameters.Element element : token.getParameters()) {
+            if (element.getToken().isPresent()) {
+                builder.append('(').append(IncrementalTokenizerTest.spans(element.getToken().get())).append(')');
+            } else {
+                builder.append('<').append(element.getStart()).append(',').append(element.getEnd()).append('>');
+            }
+        }
+        return builder.toString();
+    }
+
+    private static void assertMatchesFullTokenization(IncrementalTokenizer tokenizer, Token token) {
+        Token full = IncrementalTokenizerTest.DOCUMENT.tokenize(tokenizer.getString(), "doc").getA();
+        Assert.assertEquals(full.write(), token.write());
+        Assert.assertEquals(IncrementalTokenizerTest.spans(full), IncrementalTokenizerTest.spans(token));
+    }
+
+    @Test
+    public void reparsesOnlyTheEnclosingToken() {
+        IncrementalTokenizer tokenizer = new IncrementalTokenizer(IncrementalTokenizerTest.DOCUMENT, "doc");
+        Token token = tokenizer.tokenize("abc,[a,[bb,cc],ab],c");
+        Token edited = tokenizer.edit(8, 2, "a");
+        Assert.assertSame(token, edited);
+        Assert.assertEquals("arr", tokenizer.getReparsed().getName());
+        Assert.assertEquals("abc,[a,[a,cc],ab],c", tokenizer.getString());
+        IncrementalTokenizerTest.assertMatchesFullTokenization(tokenizer, edited);
+    }
+
+    @Test
+    public void matchesFullTokenizationAcrossRandomEdits() {
+        Random random = new Random(1);
+        IncrementalTokenizer tokenizer = new IncrementalTokenizer(IncrementalTokenizerTest.DOCUMENT, "doc");
+        tokenizer.tokenize("abc,[a,[bb,cc],ab],c,[[a]]");
+        String alphabet = "abc[],";
+        int partial = 0;
+        for (int i = 0; i < 2000; i++) {
+            String current = tokenizer.getString();
+            int offset = random.nextInt(current.length() + 1);
+            int removed = random.nextInt(Math.min(3, current.length() - offset) + 1);
+            String inserted = random.nextInt(3) == 0 ? String.valueOf(alphabet.charAt(random.nextInt(alphabet.length()))) : random.nextBoolean() ? "a" : "bc";
+            if (current.length() > 60) {
+                inserted = "";
+                removed = Math.min(current.length() - offset, 2);
+            }
+
+            Token token = tokenizer.edit(offset, removed, inserted);
+            Assert.assertEquals(current.substring(0, offset) + inserted + current.substring(offset + removed), tokenizer.getString());
+            IncrementalTokenizerTest.assertMatchesFullTokenization(tokenizer, token);
+            if (tokenizer.getReparsed() != token) {
+                partial++;
+            }
+        }
+        Assert.assertTrue(partial > 0);
+    }
+
+    @Test
+    public void accumulatesShiftsAcrossUnreadEdits() {
+        Random random = new Random(2);
+        StringBuilder document = new StringBuilder("abc");
+        for (int i = 0; i < 200; i++) {
+            document.append(",[a,[bb,cc],ab]");
+        }
+
+        IncrementalTokenizer tokenizer = new IncrementalTokenizer(IncrementalTokenizerTest.DOCUMENT, "doc");
+        Token token = tokenizer.tokenize(document.toString());
+        for (int i = 0; i < 500; i++) {
+            int offset = random.nextInt(document.length() + 1);
+            int removed = random.nextInt(Math.min(2, document.length() - offset) + 1);
+            String inserted = random.nextBoolean() ? "a" : "bc";
+            document.replace(offset, offset + removed, inserted);
+            token = tokenizer.edit(offset, removed, inserted);
+            if (i % 50 == 49) {
+                Assert.assertEquals(document.toString(), tokenizer.getString());
+                IncrementalTokenizerTest.assertMatchesFullTokenization(tokenizer, token);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEditsOutsideTheDocument() {
+        IncrementalTokenizer tokenizer = new IncrementalTokenizer(IncrementalTokenizerTest.DOCUMENT, "doc");
+        tokenizer.tokenize("abc");
+        tokenizer.edit(2, 5, "");
+    }
+
+}